@@ -0,0 +1,96 @@
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of strings that can answer "definitely not in it" from a few bits:
+ * about 10 bits per entry for a 1% chance of a false "maybe". Entries can't be
+ * removed. Lookups take no lock, so they can run next to adds on another thread.
+ * writeTo / readFrom keep it in a file (users.snap) so it isn't rebuilt at startup.
+ */
+public class BloomFilter {
+
+    private static final int HASHES = 7;
+    private static final double BITS_PER_ENTRY = 9.6; // 1% false positives at 7 hashes
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int capacity;
+    private int added = 0;
+
+    // Sized for about expected entries; past that the false positive rate climbs (see isFull)
+    public BloomFilter(int expected) {
+        capacity = Math.max(expected, 64);
+        int wordCount = (int) Math.ceil(capacity * BITS_PER_ENTRY / 64);
+        words = new AtomicLongArray(wordCount);
+        bitCount = 64L * wordCount;
+    }
+
+    private BloomFilter(int capacity, long[] bits, int added) {
+        this.capacity = capacity;
+        words = new AtomicLongArray(bits);
+        bitCount = 64L * bits.length;
+        this.added = added;
+    }
+
+    public boolean mightContain(String s) {
+        long h1 = hash1(s), h2 = hash2(s);
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    public synchronized void add(String s) {
+        long h1 = hash1(s), h2 = hash2(s);
+        for (int i = 0; i < HASHES; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            long mask = 1L << bit;
+            words.getAndAccumulate((int) (bit >>> 6), mask, (w, m) -> w | m);
+        }
+        added++;
+    }
+
+    // More entries than it was sized for; time to build a bigger one
+    public synchronized boolean isFull() {
+        return added > capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // capacity, entries added, word count, then the words
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeInt(capacity);
+        out.writeInt(added);
+        out.writeInt(words.length());
+        for (int i = 0; i < words.length(); i++) out.writeLong(words.get(i));
+    }
+
+    // A filter written by writeTo, read from the buffer's position on
+    public static BloomFilter readFrom(ByteBuffer buf) {
+        int capacity = buf.getInt(), added = buf.getInt();
+        long[] bits = new long[buf.getInt()];
+        for (int i = 0; i < bits.length; i++) bits[i] = buf.getLong();
+        return new BloomFilter(capacity, bits, added);
+    }
+
+    // Two independent 64-bit hashes; bit i is h1 + i*h2 (double hashing)
+    private static long hash1(String s) {
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long hash2(String s) {
+        long h = s.hashCode() * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 29;
+        return h | 1; // odd, so the probes never collapse onto one bit
+    }
+}
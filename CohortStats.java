@@ -0,0 +1,109 @@
+import java.util.*;
+
+/**
+ * Per-habit weekly averages for groups of users sharing a hall, department or batch.
+ * The first query fills the cache for all three attributes from WeeklyAverages; a save
+ * only invalidates the cohorts of the user who saved, and only those are recomputed on
+ * the next query. A new day in WeeklyAverages refills everything.
+ */
+public class CohortStats {
+
+    // "ATTRIBUTE|COHORT" -> (habit -> average over members who did the habit)
+    private static final Map<String, Map<String, Double>> cache = new HashMap<>();
+    // WeeklyAverages version the cache was filled from
+    private static long loaded = -1;
+
+    // ----------------- Queries -----------------
+
+    public static synchronized Map<String, Double> averages(UserRecord.Attribute attribute, String cohort) {
+        if (cohort == null || cohort.trim().isEmpty()) return new HashMap<>();
+        if (!WeeklyAverages.isCurrent(loaded)) loadAll();
+
+        String key = key(attribute, cohort);
+        Map<String, Double> cached = cache.get(key);
+        if (cached == null) {
+            cached = compute(UserIndex.filter(attribute, cohort));
+            cache.put(key, cached);
+        }
+        return cached;
+    }
+
+    public static int size(UserRecord.Attribute attribute, String cohort) {
+        return UserIndex.filter(attribute, cohort).size();
+    }
+
+    // ----------------- Invalidation -----------------
+
+    // A user's habits changed: only the cohorts they belong to are stale
+    public static synchronized void onHabitSaved(String userId) {
+        UserRecord user = UserIndex.get(userId);
+        if (user == null) return;
+        for (UserRecord.Attribute attribute : UserRecord.Attribute.values()) {
+            cache.remove(key(attribute, attribute.of(user)));
+        }
+    }
+
+    // A user joined or moved hall/department/batch: both old and new cohorts are stale
+    public static synchronized void onUsersChanged() {
+        cache.clear();
+    }
+
+    // ----------------- Computation -----------------
+
+    // Single pass over all users filling every cohort of every attribute
+    private static void loadAll() {
+        List<UserRecord> users = UserIndex.all();
+        Map<String, Map<String, Double>> weekly = new HashMap<>();
+        long version = WeeklyAverages.load(weekly);
+
+        Map<String, Accumulator> sums = new HashMap<>();
+        for (UserRecord r : users) {
+            for (UserRecord.Attribute attribute : UserRecord.Attribute.values()) {
+                String cohort = attribute.of(r);
+                if (cohort.isEmpty()) continue;
+                String key = key(attribute, cohort);
+                Map<String, Double> averages = weekly.get(r.id);
+                if (averages == null) averages = WeeklyAverages.of(r.id); // joined since the last read
+                sums.computeIfAbsent(key, k -> new Accumulator()).add(averages);
+            }
+        }
+
+        cache.clear();
+        for (Map.Entry<String, Accumulator> e : sums.entrySet()) {
+            cache.put(e.getKey(), e.getValue().averages());
+        }
+        loaded = version;
+    }
+
+    private static Map<String, Double> compute(List<UserRecord> members) {
+        Accumulator acc = new Accumulator();
+        for (UserRecord r : members) acc.add(WeeklyAverages.of(r.id));
+        return acc.averages();
+    }
+
+    private static String key(UserRecord.Attribute attribute, String cohort) {
+        return attribute.name() + "|" + UserIndex.normalize(cohort);
+    }
+
+    private static class Accumulator {
+        private final Map<String, Double> totals = new HashMap<>();
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        void add(Map<String, Double> userAverages) {
+            for (Map.Entry<String, Double> e : userAverages.entrySet()) {
+                if (e.getValue() > 0) {
+                    totals.merge(e.getKey(), e.getValue(), Double::sum);
+                    counts.merge(e.getKey(), 1, Integer::sum);
+                }
+            }
+        }
+
+        Map<String, Double> averages() {
+            Map<String, Double> result = new HashMap<>();
+            for (Map.Entry<String, Double> e : totals.entrySet()) {
+                result.put(e.getKey(), e.getValue() / counts.get(e.getKey()));
+            }
+            return result;
+        }
+    }
+}
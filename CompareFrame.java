@@ -2,6 +2,8 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.geom.RoundRectangle2D;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -37,9 +39,31 @@ public class CompareFrame extends JFrame {
     private static final Color GLASS_OVERLAY = new Color(255, 255, 255, 10);      // Glass morphism
     private static final Color SHADOW_COLOR = new Color(0, 0, 0, 25);             // Drop shadows
 
+    private static final Color[] CARD_COLORS = {
+        ACCENT_ELECTRIC_BLUE, ACCENT_CYBER_PURPLE, ACCENT_NEON_GREEN, 
+        ACCENT_CORAL, ACCENT_GOLD, ACCENT_PINK
+    };
+
+    // Most name matches shown as cards while searching
+    private static final int SEARCH_LIMIT = 100;
+    // Matches listed in "Users Like Me"
+    private static final int SIMILAR_USERS = 10;
+
     // Data structures for habit tracking
     private Map<String, Map<String, Double>> userHabitAverages = new HashMap<>();
-    private Set<String> allHabits = new HashSet<>();
+    private Set<String> allHabits = new LinkedHashSet<>(); // default habits, shown for everyone
+
+    // Community grid state, so a change can swap one card instead of rebuilding the list
+    private JPanel userGrid;
+    private Runnable refreshUserGrid;
+    private final Map<String, JPanel> userCards = new HashMap<>();
+    private final DataChangeListener dataListener = this::onDataChanged;
+
+    // Open comparison, so a change swaps one summary card or habit row instead of the whole view
+    private JLabel headerSubtitle;
+    private JPanel comparisonSummary, comparisonCharts;
+    private final Map<String, JPanel> habitCharts = new HashMap<>();
+    private final Map<String, double[]> chartValues = new HashMap<>(); // habit -> {you, them} as drawn
 
     public CompareFrame(String userId, String userName) {
         this.currentUserId = userId;
@@ -60,11 +84,100 @@ public class CompareFrame extends JFrame {
 
         loadRealUserData();
         initializeComponents();
+
+        DataEvents.subscribe(dataListener);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                DataEvents.unsubscribe(dataListener);
+            }
+        });
+    }
+
+    // Only the user that changed is re-read; only their card or the open comparison is redrawn
+    private void onDataChanged(DataChangeEvent event) {
+        SwingUtilities.invokeLater(() -> {
+            if (!isDisplayable()) return;
+            String uid = event.userId;
+            boolean shown = uid.equals(currentUserId) || uid.equals(selectedUserId);
+
+            if (event.type == DataChangeEvent.Type.HABIT_DAY_SAVED) {
+                calculateUserWeeklyAverages(uid);
+                if (comparisonMode) {
+                    if (shown) updateComparison(uid);
+                } else {
+                    replaceUserCard(uid);
+                }
+                return;
+            }
+
+            // USER_ADDED / PROFILE_UPDATED: names and filters may have changed
+            if (event.type == DataChangeEvent.Type.USER_ADDED) calculateUserWeeklyAverages(uid);
+            if (comparisonMode) {
+                if (uid.equals(selectedUserId)) {
+                    selectedUserName = UserIndex.get(uid).name;
+                    updateComparison(uid);
+                }
+            } else if (refreshUserGrid != null) {
+                refreshUserGrid.run();
+            }
+        });
+    }
+
+    // uid is the current or the selected user: redo their summary card and the habit rows whose numbers moved
+    private void updateComparison(String uid) {
+        if (comparisonSummary == null || comparisonCharts == null) {
+            showComparison();
+            return;
+        }
+        headerSubtitle.setText("Comparing " + currentUserName + " vs " + selectedUserName);
+        if (uid.equals(currentUserId)) replaceComponent(comparisonSummary, 0, createSummaryCard(true));
+        if (uid.equals(selectedUserId)) replaceComponent(comparisonSummary, 1, createSummaryCard(false));
+
+        Map<String, Double> mine = userHabitAverages.getOrDefault(currentUserId, Collections.emptyMap());
+        Map<String, Double> theirs = userHabitAverages.getOrDefault(selectedUserId, Collections.emptyMap());
+        for (String habit : habitsOf(currentUserId, selectedUserId)) {
+            double you = mine.getOrDefault(habit, 0.0);
+            double them = theirs.getOrDefault(habit, 0.0);
+            JPanel old = habitCharts.get(habit);
+            if (old != null && Arrays.equals(chartValues.get(habit), new double[] { you, them })) continue;
+            JPanel chart = createModernHabitChart(habit, you, them);
+            if (old == null) { // a habit neither of them had when the view opened
+                comparisonCharts.add(chart);
+                comparisonCharts.add(Box.createRigidArea(new Dimension(0, 25)));
+            } else {
+                replaceComponent(comparisonCharts, Arrays.asList(comparisonCharts.getComponents()).indexOf(old), chart);
+            }
+            habitCharts.put(habit, chart);
+            chartValues.put(habit, new double[] { you, them });
+        }
+        comparisonCharts.revalidate();
+        comparisonCharts.repaint(); // the bars carry the user names
+    }
+
+    private static void replaceComponent(JPanel parent, int index, Component replacement) {
+        if (index < 0 || index >= parent.getComponentCount()) return;
+        parent.remove(index);
+        parent.add(replacement, index);
+        parent.revalidate();
+        parent.repaint();
+    }
+
+    private void replaceUserCard(String uid) {
+        JPanel old = userCards.get(uid);
+        if (old == null || userGrid == null) return;
+        int index = Arrays.asList(userGrid.getComponents()).indexOf(old);
+        if (index < 0) return;
+        JPanel card = createUserCard(UserIndex.get(uid), CARD_COLORS[index % CARD_COLORS.length]);
+        userGrid.remove(index);
+        userGrid.add(card, index);
+        userCards.put(uid, card);
+        userGrid.revalidate();
+        userGrid.repaint();
     }
 
     private void loadRealUserData() {
-        allHabits.addAll(Arrays.asList("Run", "Walking", "Study", "Playing", "Online Gaming", 
-                                     "Programming", "Problem Solving", "Sleeping"));
+        allHabits.addAll(HabitRegistry.defaults());
 
         List<String[]> allUsers = UserFileHandler.getAllUsers();
         
@@ -77,32 +190,20 @@ public class CompareFrame extends JFrame {
     }
 
     private void calculateUserWeeklyAverages(String userId) {
-        Map<String, Double> userAverages = new HashMap<>();
-        
-        List<Map<String, Object>> weekData = UserFileHandler.readHabitsWithDate(userId, 7);
-        
-        for (String habit : allHabits) {
-            double total = 0.0;
-            int validDays = 0;
-            
-            for (Map<String, Object> dayData : weekData) {
-                @SuppressWarnings("unchecked")
-                Map<String, Integer> habits = (Map<String, Integer>) dayData.get("habits");
-                
-                if (habits != null && habits.containsKey(habit)) {
-                    Integer value = habits.get(habit);
-                    if (value != null && value > 0) {
-                        total += value;
-                        validDays++;
-                    }
-                }
-            }
-            
-            double average = validDays > 0 ? (total / validDays) : 0.0;
-            userAverages.put(habit, average);
+        // Only the habits the user actually tracked; views fill in the rest with 0
+        userHabitAverages.put(userId, UserFileHandler.calculateWeeklyAverages(userId));
+    }
+
+    // Default habits plus the given users' own habits and whatever they tracked last week
+    private Set<String> habitsOf(String... userIds) {
+        Set<String> habits = new LinkedHashSet<>(allHabits);
+        for (String uid : userIds) {
+            if (uid == null) continue;
+            habits.addAll(UserFileHandler.getUserHabits(uid).keySet());
+            Map<String, Double> averages = userHabitAverages.get(uid);
+            if (averages != null) habits.addAll(averages.keySet());
         }
-        
-        userHabitAverages.put(userId, userAverages);
+        return habits;
     }
 
     private void initializeComponents() {
@@ -325,22 +426,28 @@ public class CompareFrame extends JFrame {
             analysis.append("No habit data found for the last week.\n");
             analysis.append("Start tracking your habits to see your progress!");
         } else {
-            double totalAvg = myHabits.values().stream()
-                .filter(v -> v > 0)
-                .mapToDouble(Double::doubleValue)
-                .average()
-                .orElse(0.0);
+            double totalAvg = calculateOverallAverage(currentUserId);
             analysis.append(String.format("Overall Performance Score: %.1f/5.0\n\n", Math.min(5.0, totalAvg)));
             
-            myHabits.entrySet().stream()
+            Map<String, Double> allMyHabits = new HashMap<>();
+            for (String habit : habitsOf(currentUserId)) {
+                allMyHabits.put(habit, myHabits.getOrDefault(habit, 0.0));
+            }
+            allMyHabits.entrySet().stream()
                 .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
                 .forEach(entry -> {
                     String habit = entry.getKey();
                     double avg = entry.getValue();
-                    String unit = habit.equals("Problem Solving") ? "problems" : "hours";
+                    String unit = UserFileHandler.habitUnit(currentUserId, habit);
                     String performance = avg >= 3.0 ? "Excellent" : avg >= 2.0 ? "Great" : avg >= 1.0 ? "Good" : "Needs Focus";
                     analysis.append(String.format("• %s: %.1f %s/day - %s\n", habit, avg, unit, performance));
                 });
+
+            UserRecord me = UserFileHandler.getUserRecord(currentUserId);
+            if (me != null) {
+                appendCohortComparison(analysis, myHabits, UserRecord.Attribute.DEPT, "department", me.dept);
+                appendCohortComparison(analysis, myHabits, UserRecord.Attribute.HALL, "hall", me.hall);
+            }
         }
         
         JTextArea textArea = new JTextArea(analysis.toString());
@@ -369,6 +476,154 @@ public class CompareFrame extends JFrame {
         dialog.setVisible(true);
     }
 
+    private void appendCohortComparison(StringBuilder analysis, Map<String, Double> myHabits,
+                                        UserRecord.Attribute attribute, String label, String cohort) {
+        if (cohort == null || cohort.trim().isEmpty()) return;
+        Map<String, Double> cohortAverages = CohortStats.averages(attribute, cohort);
+        if (cohortAverages.isEmpty()) return;
+
+        analysis.append(String.format("\nYou vs your %s (%s, %d members)\n\n",
+            label, cohort.trim(), CohortStats.size(attribute, cohort)));
+        for (String habit : habitsOf(currentUserId)) {
+            double mine = myHabits.getOrDefault(habit, 0.0);
+            double theirs = cohortAverages.getOrDefault(habit, 0.0);
+            if (mine == 0 && theirs == 0) continue;
+            analysis.append(String.format("• %s: %.1f vs %.1f (%+.1f)\n", habit, mine, theirs, mine - theirs));
+        }
+    }
+
+    private void showRankingsDialog() {
+        JDialog dialog = new JDialog(this, "Community Rankings", true);
+        dialog.setSize(600, 500);
+        dialog.setLocationRelativeTo(this);
+        dialog.setLayout(new BorderLayout());
+        dialog.getContentPane().setBackground(BACKGROUND_PRIMARY);
+
+        JPanel contentPanel = new JPanel(new BorderLayout(0, 20));
+        contentPanel.setBackground(BACKGROUND_SECONDARY);
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(30, 30, 30, 30));
+
+        JComboBox<String> categoryBox = new JComboBox<>(Leaderboard.categories().toArray(new String[0]));
+        categoryBox.setFont(new Font("Segoe UI", Font.BOLD, 15));
+
+        JTextArea textArea = new JTextArea();
+        textArea.setEditable(false);
+        textArea.setFont(new Font("Segoe UI", Font.PLAIN, 15));
+        textArea.setBackground(BACKGROUND_ELEVATED);
+        textArea.setForeground(TEXT_PRIMARY);
+        textArea.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        Runnable showRanking = () -> {
+            String category = (String) categoryBox.getSelectedItem();
+            String unit = Leaderboard.OVERALL.equals(category) ? "hours" : UserFileHandler.habitUnit(currentUserId, category);
+            StringBuilder ranking = new StringBuilder();
+            ranking.append("Top ").append(Leaderboard.TOP_K).append(" - ").append(category).append(" (weekly average)\n\n");
+
+            List<Leaderboard.Entry> top = Leaderboard.top(category);
+            if (top.isEmpty()) {
+                ranking.append("No habit data yet for this category.");
+            }
+            int rank = 1;
+            for (Leaderboard.Entry entry : top) {
+                String name = UserFileHandler.getUserName(entry.userId);
+                if (name.isEmpty()) name = entry.userId;
+                String you = entry.userId.equals(currentUserId) ? "  ← You" : "";
+                ranking.append(String.format("%2d. %s: %.1f %s/day%s\n", rank++, name, entry.score, unit, you));
+            }
+            textArea.setText(ranking.toString());
+            textArea.setCaretPosition(0);
+        };
+        categoryBox.addActionListener(e -> showRanking.run());
+        showRanking.run();
+
+        JScrollPane scrollPane = new JScrollPane(textArea);
+        scrollPane.setBackground(BACKGROUND_ELEVATED);
+        scrollPane.setBorder(BorderFactory.createLineBorder(BORDER_ACCENT, 1));
+        styleScrollPane(scrollPane);
+
+        JButton closeBtn = createGlowButton("Close", ACCENT_ELECTRIC_BLUE);
+        closeBtn.addActionListener(e -> dialog.dispose());
+
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+        buttonPanel.setOpaque(false);
+        buttonPanel.add(closeBtn);
+
+        contentPanel.add(categoryBox, BorderLayout.NORTH);
+        contentPanel.add(scrollPane, BorderLayout.CENTER);
+        contentPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        dialog.add(contentPanel);
+        dialog.setVisible(true);
+    }
+
+    // Members whose weekly habit mix is closest to the current user's
+    private void showSimilarUsersDialog() {
+        JDialog dialog = new JDialog(this, "Users Like Me", true);
+        dialog.setSize(600, 500);
+        dialog.setLocationRelativeTo(this);
+        dialog.setLayout(new BorderLayout());
+        dialog.getContentPane().setBackground(BACKGROUND_PRIMARY);
+
+        JPanel contentPanel = new JPanel(new BorderLayout(0, 20));
+        contentPanel.setBackground(BACKGROUND_SECONDARY);
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(30, 30, 30, 30));
+
+        JLabel titleLabel = new JLabel("Members with the most similar habits (last week)");
+        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 16));
+        titleLabel.setForeground(TEXT_PRIMARY);
+
+        List<SimilarityIndex.Match> matches = SimilarityIndex.nearest(currentUserId, SIMILAR_USERS);
+        DefaultListModel<String> listModel = new DefaultListModel<>();
+        for (SimilarityIndex.Match match : matches) {
+            String name = UserFileHandler.getUserName(match.userId);
+            if (name.isEmpty()) name = match.userId;
+            listModel.addElement(String.format("%s  -  %.0f%% match", name, match.similarity * 100));
+        }
+        if (matches.isEmpty()) {
+            listModel.addElement("Track your habits for a few days to find similar members.");
+        }
+
+        JList<String> matchList = new JList<>(listModel);
+        matchList.setFont(new Font("Segoe UI", Font.PLAIN, 15));
+        matchList.setBackground(BACKGROUND_ELEVATED);
+        matchList.setForeground(TEXT_PRIMARY);
+        matchList.setSelectionBackground(ACCENT_CYBER_PURPLE);
+        matchList.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        matchList.setEnabled(!matches.isEmpty());
+
+        JScrollPane scrollPane = new JScrollPane(matchList);
+        scrollPane.setBackground(BACKGROUND_ELEVATED);
+        scrollPane.setBorder(BorderFactory.createLineBorder(BORDER_ACCENT, 1));
+        styleScrollPane(scrollPane);
+
+        JButton compareBtn = createGlowButton("Compare", ACCENT_NEON_GREEN);
+        compareBtn.setEnabled(false);
+        matchList.addListSelectionListener(e -> compareBtn.setEnabled(matchList.getSelectedIndex() >= 0));
+        compareBtn.addActionListener(e -> {
+            SimilarityIndex.Match match = matches.get(matchList.getSelectedIndex());
+            selectedUserId = match.userId;
+            selectedUserName = UserFileHandler.getUserName(match.userId);
+            comparisonMode = true;
+            dialog.dispose();
+            showComparison();
+        });
+
+        JButton closeBtn = createGlowButton("Close", ACCENT_ELECTRIC_BLUE);
+        closeBtn.addActionListener(e -> dialog.dispose());
+
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+        buttonPanel.setOpaque(false);
+        buttonPanel.add(compareBtn);
+        buttonPanel.add(closeBtn);
+
+        contentPanel.add(titleLabel, BorderLayout.NORTH);
+        contentPanel.add(scrollPane, BorderLayout.CENTER);
+        contentPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        dialog.add(contentPanel);
+        dialog.setVisible(true);
+    }
+
     private void refreshToUserList() {
         getContentPane().removeAll();
         add(createEnhancedHeaderPanel(), BorderLayout.NORTH);
@@ -420,6 +675,7 @@ public class CompareFrame extends JFrame {
         JLabel subtitleLabel = new JLabel(comparisonMode ? 
             "Comparing " + currentUserName + " vs " + selectedUserName : 
             "Discover and connect with fellow habit builders");
+        headerSubtitle = subtitleLabel;
         subtitleLabel.setFont(new Font("Segoe UI", Font.PLAIN, 18));
         subtitleLabel.setForeground(new Color(240, 245, 255));
         subtitleLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -448,14 +704,9 @@ public class CompareFrame extends JFrame {
         JPanel headerInfo = new JPanel();
         headerInfo.setLayout(new BoxLayout(headerInfo, BoxLayout.Y_AXIS));
         headerInfo.setOpaque(false);
-        headerInfo.setMaximumSize(new Dimension(Integer.MAX_VALUE, 100));
-
-        List<String[]> allUsers = UserFileHandler.getAllUsers();
-        int otherUsersCount = (int) allUsers.stream()
-            .filter(user -> !user[0].equals(currentUserId))
-            .count();
+        headerInfo.setMaximumSize(new Dimension(Integer.MAX_VALUE, 140));
 
-        JLabel statsLabel = new JLabel("Active Community Members (" + otherUsersCount + " users)");
+        JLabel statsLabel = new JLabel();
         statsLabel.setFont(new Font("Segoe UI", Font.BOLD, 22));
         statsLabel.setForeground(TEXT_PRIMARY);
         statsLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
@@ -466,52 +717,19 @@ public class CompareFrame extends JFrame {
         infoLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
         infoLabel.setBorder(BorderFactory.createEmptyBorder(8, 0, 20, 0));
 
-        headerInfo.add(statsLabel);
-        headerInfo.add(infoLabel);
-
-        userListPanel.add(headerInfo);
-        userListPanel.add(Box.createRigidArea(new Dimension(0, 25)));
-
         // Enhanced user grid
         JPanel userGrid = new JPanel(new GridLayout(0, 2, 25, 25));
         userGrid.setBackground(BACKGROUND_PRIMARY);
+        this.userGrid = userGrid;
 
-        Color[] cardColors = {
-            ACCENT_ELECTRIC_BLUE, ACCENT_CYBER_PURPLE, ACCENT_NEON_GREEN, 
-            ACCENT_CORAL, ACCENT_GOLD, ACCENT_PINK
-        };
-        int colorIndex = 0;
-
-        for (String[] user : allUsers) {
-            String uid = user[0];
-            String uname = user[1];
-            
-            if (uid.equals(currentUserId)) {
-                continue;
-            }
+        headerInfo.add(statsLabel);
+        headerInfo.add(infoLabel);
+        headerInfo.add(createUserFilterPanel(userGrid, statsLabel));
 
-            Color cardColor = cardColors[colorIndex % cardColors.length];
-            
-            Map<String, Double> userHabits = userHabitAverages.get(uid);
-            double overallAvg = 0.0;
-            if (userHabits != null && !userHabits.isEmpty()) {
-                overallAvg = userHabits.values().stream()
-                    .filter(v -> v > 0)
-                    .mapToDouble(Double::doubleValue)
-                    .average()
-                    .orElse(0.0);
-            }
-            
-            String badge = overallAvg >= 3.0 ? "Elite Performer" : 
-                          overallAvg >= 2.0 ? "Consistent Builder" :
-                          overallAvg >= 1.0 ? "Rising Star" : "New Explorer";
-            
-            String rating = String.format("%.1f/5.0", Math.min(5.0, overallAvg));
+        userListPanel.add(headerInfo);
+        userListPanel.add(Box.createRigidArea(new Dimension(0, 25)));
 
-            JPanel userCard = createEnhancedUserCard(uid, uname, badge, rating, cardColor);
-            userGrid.add(userCard);
-            colorIndex++;
-        }
+        populateUserGrid(userGrid, statsLabel, UserFileHandler.getAllUserRecords());
 
         userListPanel.add(userGrid);
 
@@ -526,6 +744,49 @@ public class CompareFrame extends JFrame {
         return containerPanel;
     }
 
+    private void populateUserGrid(JPanel userGrid, JLabel statsLabel, List<UserRecord> users) {
+        userGrid.removeAll();
+        userCards.clear();
+
+        int colorIndex = 0;
+
+        for (UserRecord user : users) {
+            if (user.id.equals(currentUserId)) {
+                continue;
+            }
+
+            JPanel userCard = createUserCard(user, CARD_COLORS[colorIndex % CARD_COLORS.length]);
+            userGrid.add(userCard);
+            userCards.put(user.id, userCard);
+            colorIndex++;
+        }
+
+        statsLabel.setText("Active Community Members (" + colorIndex + " users)");
+        userGrid.revalidate();
+        userGrid.repaint();
+    }
+
+    private JPanel createUserCard(UserRecord user, Color cardColor) {
+        double overallAvg = calculateOverallAverage(user.id);
+
+        String badge = overallAvg >= 3.0 ? "Elite Performer" : 
+                      overallAvg >= 2.0 ? "Consistent Builder" :
+                      overallAvg >= 1.0 ? "Rising Star" : "New Explorer";
+
+        String rating = String.format("%.1f/5.0", Math.min(5.0, overallAvg));
+
+        return createEnhancedUserCard(user.id, user.name, badge, rating, cardColor);
+    }
+
+    private JPanel createUserFilterPanel(JPanel userGrid, JLabel statsLabel) {
+        UserFilterPanel filterPanel = new UserFilterPanel("All Members", 14, TEXT_SECONDARY, SEARCH_LIMIT,
+            users -> populateUserGrid(userGrid, statsLabel, users));
+        filterPanel.setOpaque(false);
+        filterPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        refreshUserGrid = filterPanel::refresh;
+        return filterPanel;
+    }
+
     private JPanel createEnhancedUserCard(String userId, String userName, String badge, String rating, Color accentColor) {
         JPanel card = new JPanel() {
             private boolean isHovered = false;
@@ -688,26 +949,35 @@ public class CompareFrame extends JFrame {
         summaryPanel.setBackground(BACKGROUND_PRIMARY);
         summaryPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 180));
 
-        JPanel currentUserCard = createModernSummaryCard(
-            currentUserName + " (You)",
-            calculateOverallAverage(currentUserId),
-            "Your Performance",
-            ACCENT_ELECTRIC_BLUE,
-            "🎯"
-        );
+        summaryPanel.add(createSummaryCard(true));
+        summaryPanel.add(createSummaryCard(false));
+
+        comparisonSummary = summaryPanel;
+        return summaryPanel;
+    }
 
-        JPanel selectedUserCard = createModernSummaryCard(
+    // The current user's card (left) or the selected user's (right)
+    private JPanel createSummaryCard(boolean you) {
+        if (you) {
+            double currentAverage = calculateOverallAverage(currentUserId);
+            return createModernSummaryCard(
+                currentUserName + " (You)",
+                currentAverage,
+                "Your Performance · " + HabitPercentiles.describe(
+                    HabitPercentiles.percentileRank(Leaderboard.OVERALL, currentAverage)),
+                ACCENT_ELECTRIC_BLUE,
+                "🎯"
+            );
+        }
+        double selectedAverage = calculateOverallAverage(selectedUserId);
+        return createModernSummaryCard(
             selectedUserName,
-            calculateOverallAverage(selectedUserId),
-            "Their Performance",
+            selectedAverage,
+            "Their Performance · " + HabitPercentiles.describe(
+                HabitPercentiles.percentileRank(Leaderboard.OVERALL, selectedAverage)),
             ACCENT_CYBER_PURPLE,
             "👤"
         );
-
-        summaryPanel.add(currentUserCard);
-        summaryPanel.add(selectedUserCard);
-
-        return summaryPanel;
     }
 
     private JPanel createModernSummaryCard(String title, double average, String subtitle, Color accentColor, String icon) {
@@ -806,29 +1076,23 @@ public class CompareFrame extends JFrame {
         Map<String, Double> currentUserHabits = userHabitAverages.get(currentUserId);
         Map<String, Double> selectedUserHabits = userHabitAverages.get(selectedUserId);
 
-        if (currentUserHabits == null) {
-            currentUserHabits = new HashMap<>();
-            for (String habit : allHabits) {
-                currentUserHabits.put(habit, 0.0);
-            }
-        }
-        
-        if (selectedUserHabits == null) {
-            selectedUserHabits = new HashMap<>();
-            for (String habit : allHabits) {
-                selectedUserHabits.put(habit, 0.0);
-            }
-        }
+        if (currentUserHabits == null) currentUserHabits = new HashMap<>();
+        if (selectedUserHabits == null) selectedUserHabits = new HashMap<>();
 
-        for (String habit : allHabits) {
+        habitCharts.clear();
+        chartValues.clear();
+        for (String habit : habitsOf(currentUserId, selectedUserId)) {
             double currentUserValue = currentUserHabits.getOrDefault(habit, 0.0);
             double selectedUserValue = selectedUserHabits.getOrDefault(habit, 0.0);
 
             JPanel habitChart = createModernHabitChart(habit, currentUserValue, selectedUserValue);
             chartsPanel.add(habitChart);
             chartsPanel.add(Box.createRigidArea(new Dimension(0, 25)));
+            habitCharts.put(habit, habitChart);
+            chartValues.put(habit, new double[] { currentUserValue, selectedUserValue });
         }
 
+        comparisonCharts = chartsPanel;
         return chartsPanel;
     }
 
@@ -872,11 +1136,11 @@ public class CompareFrame extends JFrame {
         infoPanel.setOpaque(false);
         infoPanel.setPreferredSize(new Dimension(220, 0));
 
-        JLabel habitLabel = new JLabel(getHabitIcon(habitName) + " " + habitName);
+        JLabel habitLabel = new JLabel(HabitRegistry.icon(habitName) + " " + habitName);
         habitLabel.setFont(new Font("Segoe UI", Font.BOLD, 20));
         habitLabel.setForeground(TEXT_PRIMARY);
 
-        String unit = habitName.equals("Problem Solving") ? " problems" : " hours";
+        String unit = " " + UserFileHandler.habitUnit(currentUserId, habitName);
         JLabel comparisonLabel = new JLabel(String.format("You: %.1f%s | Them: %.1f%s", 
                                                           currentUserValue, unit, 
                                                           selectedUserValue, unit));
@@ -890,9 +1154,19 @@ public class CompareFrame extends JFrame {
         diffLabel.setFont(new Font("Segoe UI", Font.BOLD, 16));
         diffLabel.setForeground(difference >= 0 ? ACCENT_NEON_GREEN : ACCENT_CORAL);
 
+        JLabel percentileLabel = new JLabel("Your " + habitName + " is in the "
+            + HabitPercentiles.describe(HabitPercentiles.percentileRank(habitName, currentUserValue)));
+        percentileLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        percentileLabel.setForeground(TEXT_TERTIARY);
+        percentileLabel.setBorder(BorderFactory.createEmptyBorder(8, 0, 0, 0));
+        if (currentUserValue <= 0) {
+            percentileLabel.setText("No " + habitName + " logged this week");
+        }
+
         infoPanel.add(habitLabel);
         infoPanel.add(comparisonLabel);
         infoPanel.add(diffLabel);
+        infoPanel.add(percentileLabel);
 
         // Right chart panel
         JPanel chartAreaPanel = new JPanel() {
@@ -912,7 +1186,7 @@ public class CompareFrame extends JFrame {
                 double maxValue = Math.max(currentUserValue, selectedUserValue);
                 if (maxValue == 0) maxValue = 1;
                 
-                double scaleMax = habitName.equals("Problem Solving") ? 10.0 : 8.0;
+                double scaleMax = UserFileHandler.isTimed(currentUserId, habitName) ? 8.0 : 10.0;
                 maxValue = Math.max(maxValue, scaleMax);
 
                 drawEnhancedProgressBar(g2d, x, y1, width, barHeight, currentUserValue, maxValue, 
@@ -1021,6 +1295,14 @@ public class CompareFrame extends JFrame {
             navPanel.add(backToListBtn);
         }
 
+        JButton rankingsBtn = createGlowButton("🏆 Rankings", ACCENT_NEON_GREEN);
+        rankingsBtn.addActionListener(e -> showRankingsDialog());
+        navPanel.add(rankingsBtn);
+
+        JButton similarBtn = createGlowButton("👥 Users Like Me", ACCENT_CYBER_PURPLE);
+        similarBtn.addActionListener(e -> showSimilarUsersDialog());
+        navPanel.add(similarBtn);
+
         JButton backToDashboardBtn = createGlowButton("← Dashboard", ACCENT_CORAL);
         backToDashboardBtn.addActionListener(e -> {
             new DashboardFrame(currentUserId, currentUserName).setVisible(true);
@@ -1065,36 +1347,14 @@ public class CompareFrame extends JFrame {
     }
 
     // Helper methods
-    private String getHabitIcon(String habitName) {
-        switch (habitName) {
-            case "Run": return "🏃";
-            case "Walking": return "🚶";
-            case "Study": return "📚";
-            case "Playing": return "🎮";
-            case "Online Gaming": return "🎯";
-            case "Programming": return "💻";
-            case "Problem Solving": return "🧩";
-            case "Sleeping": return "💤";
-            default: return "📋";
-        }
-    }
-
     private double calculateOverallAverage(String userId) {
         Map<String, Double> userHabits = userHabitAverages.get(userId);
         if (userHabits == null || userHabits.isEmpty()) {
             return 0.0;
         }
         
-        double total = userHabits.values().stream()
-            .filter(value -> value != null && value > 0)
-            .mapToDouble(Double::doubleValue)
-            .sum();
-        
-        long count = userHabits.values().stream()
-            .filter(value -> value != null && value > 0)
-            .count();
-            
-        return count > 0 ? total / count : 0.0;
+        double[] averages = HabitKernels.toColumn(userHabits.values());
+        return HabitKernels.meanPositive(averages, 0, averages.length);
     }
 
     private JButton createGlowButton(String text, Color bgColor) {
@@ -3,12 +3,20 @@ import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
 
 public class DashboardFrame extends JFrame {
     private String userId;
     private String userName;
+    private JLabel statsLabel;
+    // Keeps the community card current while the dashboard is open
+    private final DataChangeListener dataListener = e -> SwingUtilities.invokeLater(() -> {
+        if (statsLabel != null) statsLabel.setText(statsText());
+    });
 
     private static final Color PRIMARY_COLOR = new Color(37, 99, 235);
     private static final Color SECONDARY_COLOR = new Color(99, 102, 241);
@@ -50,6 +58,14 @@ public class DashboardFrame extends JFrame {
 
         add(mainPanel);
 
+        DataEvents.subscribe(dataListener);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                DataEvents.unsubscribe(dataListener);
+            }
+        });
+
         setVisible(true);
     }
 
@@ -77,7 +93,10 @@ public class DashboardFrame extends JFrame {
         dateLabel.setForeground(TEXT_SECONDARY);
         dateLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
 
-        JLabel mottoLabel = new JLabel("Ready to build better habits today?");
+        StreakTracker.Streak streak = StreakTracker.best(userId);
+        JLabel mottoLabel = new JLabel(streak == null
+            ? "Ready to build better habits today?"
+            : "🔥 " + streak.current + "-day " + streak.habit + " streak - keep it going!");
         mottoLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         mottoLabel.setForeground(TEXT_SECONDARY);
         mottoLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
@@ -152,7 +171,7 @@ public class DashboardFrame extends JFrame {
                 dispose();
             });
 
-        JPanel placeholderCard = createPlaceholderCard();
+        JPanel statsCard = createStatsCard();
 
         JPanel logoutCard = createDashboardCard("Sign Out", "Exit your account",
             "🚪", ERROR_COLOR, e -> {
@@ -170,43 +189,67 @@ public class DashboardFrame extends JFrame {
         contentPanel.add(showCard);
         contentPanel.add(compareCard);
         contentPanel.add(profileCard);
-        contentPanel.add(placeholderCard);
+        contentPanel.add(statsCard);
         contentPanel.add(logoutCard);
 
         return contentPanel;
     }
 
-    private JPanel createPlaceholderCard() {
+    private JPanel createStatsCard() {
         JPanel card = new JPanel();
         card.setLayout(new BorderLayout());
-        card.setBackground(new Color(250, 250, 250));
-        card.setBorder(BorderFactory.createLineBorder(new Color(226, 232, 240), 1, true));
+        card.setBackground(CARD_COLOR);
+        card.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(new Color(226, 232, 240), 1),
+            new EmptyBorder(20, 20, 20, 20)
+        ));
+
+        JLabel iconLabel = new JLabel("🌍");
+        iconLabel.setFont(new Font("Segoe UI Emoji", Font.PLAIN, 28));
+        iconLabel.setForeground(CYAN_COLOR);
 
         JPanel centerPanel = new JPanel();
         centerPanel.setLayout(new BoxLayout(centerPanel, BoxLayout.Y_AXIS));
-        centerPanel.setBackground(new Color(250, 250, 250));
-        centerPanel.setBorder(new EmptyBorder(30, 20, 30, 20));
-
-        JLabel placeholderIcon = new JLabel("⭐");
-        placeholderIcon.setFont(new Font("Segoe UI Emoji", Font.PLAIN, 24));
-        placeholderIcon.setForeground(TEXT_SECONDARY);
-        placeholderIcon.setAlignmentX(Component.CENTER_ALIGNMENT);
-
-        JLabel placeholderText = new JLabel("More features");
-        placeholderText.setFont(new Font("Segoe UI", Font.PLAIN, 14));
-        placeholderText.setForeground(TEXT_SECONDARY);
-        placeholderText.setAlignmentX(Component.CENTER_ALIGNMENT);
-
-        centerPanel.add(placeholderIcon);
-        centerPanel.add(Box.createVerticalStrut(10));
-        centerPanel.add(placeholderText);
+        centerPanel.setBackground(CARD_COLOR);
+        centerPanel.setBorder(new EmptyBorder(10, 0, 0, 0));
+
+        JLabel titleLabel = new JLabel("Community");
+        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 16));
+        titleLabel.setForeground(TEXT_PRIMARY);
+        titleLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+
+        statsLabel = new JLabel(statsText());
+        statsLabel.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        statsLabel.setForeground(TEXT_SECONDARY);
+        statsLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+
+        centerPanel.add(titleLabel);
         centerPanel.add(Box.createVerticalStrut(5));
+        centerPanel.add(statsLabel);
 
+        card.add(iconLabel, BorderLayout.NORTH);
         card.add(centerPanel, BorderLayout.CENTER);
 
         return card;
     }
 
+    // Materialized numbers: no habit file is read here
+    private String statsText() {
+        StringBuilder stats = new StringBuilder("<html>");
+        stats.append(GlobalStats.totalUsers()).append(" users, ")
+             .append(GlobalStats.activeToday()).append(" active today<br>")
+             .append(GlobalStats.totalHours()).append(" hours logged");
+        java.util.List<GlobalStats.HabitTotal> totals = GlobalStats.habitTotals();
+        if (!totals.isEmpty()) {
+            GlobalStats.HabitTotal top = totals.get(0);
+            stats.append("<br>Top: ").append(HabitRegistry.icon(top.habit)).append(" ")
+                 .append(top.habit).append(" (").append(top.total).append(" ")
+                 .append(top.unit).append(")");
+        }
+        stats.append("</html>");
+        return stats.toString();
+    }
+
     private JPanel createDashboardCard(String title, String description, String icon,
                                        Color accentColor, java.awt.event.ActionListener action) {
         JPanel card = new JPanel();
@@ -0,0 +1,23 @@
+/**
+ * What changed in the data files. userId is always set; date is the
+ * habit day for HABIT_DAY_SAVED, or null when the whole habit file may have
+ * changed (DataWatcher) and for the other types.
+ */
+public class DataChangeEvent {
+
+    public enum Type { USER_ADDED, PROFILE_UPDATED, HABIT_DAY_SAVED }
+
+    public final Type type;
+    public final String userId;
+    public final String date;
+
+    public DataChangeEvent(Type type, String userId, String date) {
+        this.type = type;
+        this.userId = userId;
+        this.date = date;
+    }
+
+    public boolean isHabitDayOf(String userId) {
+        return type == Type.HABIT_DAY_SAVED && this.userId.equals(userId);
+    }
+}
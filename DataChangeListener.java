@@ -0,0 +1,3 @@
+public interface DataChangeListener {
+    void onDataChanged(DataChangeEvent event);
+}
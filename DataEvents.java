@@ -0,0 +1,32 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process bus for data changes. UserFileHandler publishes after each write
+ * has reached the file and the engines have been updated; open windows
+ * subscribe so they can refresh just the part that changed instead of being
+ * rebuilt. Listeners run on the publishing thread, so Swing views hand the
+ * work to the EDT themselves, and they must unsubscribe when disposed.
+ */
+public class DataEvents {
+
+    private static final List<DataChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public static void subscribe(DataChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void unsubscribe(DataChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    public static void publish(DataChangeEvent event) {
+        for (DataChangeListener listener : listeners) {
+            try {
+                listener.onDataChanged(event);
+            } catch (Exception e) {
+                e.printStackTrace(); // one broken view must not stop the others or the save
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Picks up edits made to users.txt and habits/ (including its shard
+ * subdirectories) while the app is running (an admin fixing a line, a batch
+ * of habit files copied in). Events are
+ * collected until the directory has been quiet for a moment and then handled
+ * together, so copying 10k files costs one pass over exactly those files.
+ * Only the files that changed are re-read; the app's own writes are
+ * recognised by the size and timestamp they left behind and skipped.
+ */
+public class DataWatcher {
+
+    private static final long QUIET_MILLIS = 500;   // wait this long after the last event
+    private static final long MAX_WAIT_MILLIS = 5000; // but never longer than this after the first
+
+    private static final File userFile = new File("users.txt");
+    private static final Path habitDir = HabitPaths.ROOT.toPath().toAbsolutePath();
+
+    // path -> {lastModified, length} right after the app wrote it
+    private static final Map<String, long[]> ownWrites = new ConcurrentHashMap<>();
+
+    private static final Set<Path> pending = new HashSet<>(); // absolute paths of changed files
+    private static boolean overflow = false;
+    private static long firstPending = 0;
+    private static ScheduledFuture<?> flush = null;
+    private static ScheduledExecutorService flusher = null;
+
+    // ----------------- Lifecycle -----------------
+
+    // Start watching on a daemon thread; safe to call more than once
+    public static synchronized void start() {
+        if (flusher != null) return;
+        if (!(UserFileHandler.storage() instanceof TextFileStorage)) return; // nothing on disk for admins to edit
+        WatchService watcher;
+        try {
+            HabitPaths.ROOT.mkdirs();
+            watcher = FileSystems.getDefault().newWatchService();
+            userFile.getAbsoluteFile().getParentFile().toPath()
+                .register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            registerTree(watcher, habitDir);
+        } catch (IOException e) {
+            e.printStackTrace(); // the app still works, it just won't see outside edits
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "data-watcher-flush"));
+        daemon(() -> watch(watcher), "data-watcher").start();
+    }
+
+    // Called by UserFileHandler right after it writes a watched file
+    static void ownWrite(File f) {
+        ownWrites.put(f.getAbsolutePath(), new long[] { f.lastModified(), f.length() });
+    }
+
+    // habits/ and every shard directory below it
+    private static void registerTree(WatchService watcher, Path dir) throws IOException {
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            for (Path child : children) registerTree(watcher, child);
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    // ----------------- Collecting events -----------------
+
+    private static void watch(WatchService watcher) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            boolean inHabits = dir.startsWith(habitDir);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    queue(null);
+                    continue;
+                }
+                Path path = dir.resolve((Path) event.context());
+                String name = path.getFileName().toString();
+                if (inHabits && event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                    try {
+                        registerTree(watcher, path); // a new shard; files may already be in it
+                        try (DirectoryStream<Path> files = Files.newDirectoryStream(path, "*.{txt,bin,gz}")) {
+                            for (Path f : files) queue(f);
+                        }
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+                else if (inHabits && (isHabitFile(name) || name.endsWith("_goals.txt"))) queue(path);
+                else if (!inHabits && name.equals(userFile.getName())) queue(path);
+            }
+            key.reset();
+        }
+    }
+
+    // null = events were lost, refresh everyone
+    private static synchronized void queue(Path path) {
+        if (path == null) overflow = true;
+        else pending.add(path);
+
+        long now = System.currentTimeMillis();
+        if (flush == null) firstPending = now;
+        else if (now - firstPending < MAX_WAIT_MILLIS) flush.cancel(false);
+        else return; // already waited long enough, the scheduled flush picks this up
+        flush = flusher.schedule(DataWatcher::flush, QUIET_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // ----------------- Applying changes -----------------
+
+    private static void flush() {
+        Set<Path> paths;
+        boolean all;
+        synchronized (DataWatcher.class) {
+            paths = new HashSet<>(pending);
+            all = overflow;
+            pending.clear();
+            overflow = false;
+            flush = null;
+        }
+        try {
+            apply(paths, all);
+        } catch (Exception e) {
+            e.printStackTrace(); // keep watching
+        }
+    }
+
+    private static void apply(Set<Path> paths, boolean all) {
+        Path users = userFile.toPath().toAbsolutePath();
+        if (all || (paths.contains(users) && !isOwnWrite(userFile))) reloadUsers();
+
+        Set<String> habitUsers = new LinkedHashSet<>();
+        Set<String> goalUsers = new LinkedHashSet<>();
+        if (all) {
+            for (UserRecord r : UserIndex.all()) habitUsers.add(r.id);
+        } else {
+            for (Path path : paths) {
+                if (path.equals(users)) continue;
+                String name = path.getFileName().toString();
+                String userId = HabitPaths.userIdOf(name);
+                boolean habits = isHabitFile(name);
+                // A flat file dropped into habits/ takes over the user's sharded one
+                if (path.getParent().equals(habitDir) && Files.exists(path)) ownWrite(HabitPaths.adopt(path.toFile()));
+                else if (isOwnWrite(path.toFile())) continue;
+                (habits ? habitUsers : goalUsers).add(userId);
+            }
+        }
+        if (all) UserFileHandler.onGoalsFileChanged(null);
+        for (String userId : goalUsers) UserFileHandler.onGoalsFileChanged(userId);
+        goalUsers.removeAll(habitUsers); // a habit refresh recounts streaks with the new goals too
+        for (String userId : goalUsers) StreakTracker.onGoalsChanged(userId);
+        if (habitUsers.isEmpty()) return;
+
+        String today = java.time.LocalDate.now().toString();
+        for (String userId : habitUsers) {
+            reloadHabits(userId);
+            GlobalStats.onHabitsReloaded(userId, !UserFileHandler.loadHabit(userId, today).isEmpty());
+        }
+        for (String userId : habitUsers) {
+            DataEvents.publish(new DataChangeEvent(DataChangeEvent.Type.HABIT_DAY_SAVED, userId, null));
+        }
+    }
+
+    // Same engine updates saveHabit makes, driven by the file as it now is
+    private static void reloadHabits(String userId) {
+        Map<String, Double> weekly = UserFileHandler.calculateWeeklyAverages(userId);
+        WeeklyAverages.onHabitSaved(userId, weekly); // first: the engines below read from it
+        Leaderboard.onHabitSaved(userId, weekly);
+        HabitPercentiles.onHabitSaved(userId, weekly);
+        SimilarityIndex.onHabitSaved(userId, weekly);
+        CohortStats.onHabitSaved(userId);
+        StreakTracker.onHistoryChanged(userId);
+        HabitRollups.rebuild(userId);
+    }
+
+    private static void reloadUsers() {
+        Map<String, DataChangeEvent.Type> changes = UserIndex.sync(UserFileHandler.readUserFile());
+        if (changes.isEmpty()) return;
+        CohortStats.onUsersChanged();
+        GlobalStats.onUsersReloaded();
+        for (Map.Entry<String, DataChangeEvent.Type> e : changes.entrySet()) {
+            if (e.getValue() != null) DataEvents.publish(new DataChangeEvent(e.getValue(), e.getKey(), null));
+        }
+    }
+
+    // <id>_habits.txt or one of its month/year segments (not the .tmp they are written through)
+    private static boolean isHabitFile(String name) {
+        return name.contains("_habits.") && (name.endsWith(".txt") || name.endsWith(".bin") || name.endsWith(".gz"));
+    }
+
+    private static boolean isOwnWrite(File f) {
+        long[] mark = ownWrites.get(f.getAbsolutePath());
+        if (mark == null) return false;
+        boolean own = mark[0] == f.lastModified() && mark[1] == f.length();
+        if (!own) ownWrites.remove(f.getAbsolutePath());
+        return own;
+    }
+}
@@ -0,0 +1,247 @@
+import java.io.*;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Population-wide numbers for the dashboard: users, users active today,
+ * hours logged and a total per habit and unit (a custom habit logged in
+ * "times" by one user and "hours" by another is two totals). Kept in global_stats.txt and adjusted
+ * by saveUser / saveHabit with just the difference each write makes (and by
+ * DataWatcher, user by user, for outside edits), so the dashboard never
+ * scans the habit files. Each user's share of the totals is kept as well, so
+ * an edited user's old share can be taken back without knowing what the files
+ * held before. Built once from all files if the stats file is missing or
+ * unreadable.
+ */
+public class GlobalStats {
+
+    private static final File statsFile = new File("global_stats.txt");
+
+    private static boolean loaded = false;
+    private static int totalUsers = 0;
+    private static long totalHours = 0;
+    private static final Map<String, Long> habitTotals = new LinkedHashMap<>(); // "habit,unit" -> total
+    private static final Map<String, Map<String, Long>> userTotals = new HashMap<>(); // id -> that user's share
+    private static int activeDay = 0;                               // epoch day activeUsers refers to
+    private static final Set<String> activeUsers = new HashSet<>(); // users who saved on activeDay
+
+    // ----------------- Queries -----------------
+
+    public static synchronized int totalUsers() {
+        ensureLoaded();
+        return totalUsers;
+    }
+
+    public static synchronized int activeToday() {
+        ensureLoaded();
+        return activeDay == today() ? activeUsers.size() : 0;
+    }
+
+    public static synchronized long totalHours() {
+        ensureLoaded();
+        return totalHours;
+    }
+
+    // What everyone logged of one habit in one unit
+    public static class HabitTotal {
+        public final String habit;
+        public final String unit;
+        public final long total;
+
+        HabitTotal(String habit, String unit, long total) {
+            this.habit = habit;
+            this.unit = unit;
+            this.total = total;
+        }
+    }
+
+    // Largest first
+    public static synchronized List<HabitTotal> habitTotals() {
+        ensureLoaded();
+        List<HabitTotal> totals = new ArrayList<>();
+        for (Map.Entry<String, Long> e : habitTotals.entrySet()) {
+            int comma = e.getKey().lastIndexOf(',');
+            totals.add(new HabitTotal(e.getKey().substring(0, comma), e.getKey().substring(comma + 1), e.getValue()));
+        }
+        totals.sort(Comparator.comparingLong((HabitTotal t) -> t.total).reversed());
+        return totals;
+    }
+
+    // ----------------- Updates -----------------
+
+    public static synchronized void onUserAdded() {
+        if (ensureLoaded()) return; // the rebuild already counted them
+        totalUsers++;
+        write();
+    }
+
+    // users.txt was re-read; the user count comes from the index
+    public static synchronized void onUsersReloaded() {
+        if (ensureLoaded()) return;
+        totalUsers = UserIndex.size();
+        write();
+    }
+
+    // A day line was replaced: add the new values and take back the old ones
+    public static synchronized void onHabitSaved(String userId, String date,
+                                                 Map<String, Integer> before, Map<String, Integer> after) {
+        if (ensureLoaded()) return; // the rebuild already read this save from the file
+        add(userId, before, -1);
+        add(userId, after, 1);
+        if (date.equals(LocalDate.now().toString())) {
+            if (activeDay != today()) {
+                activeDay = today();
+                activeUsers.clear();
+            }
+            activeUsers.add(userId);
+        }
+        write();
+    }
+
+    // A user's habit files were edited outside the app: take back their share as last
+    // counted and add what the files hold now
+    public static synchronized void onHabitsReloaded(String userId, boolean activeToday) {
+        if (ensureLoaded()) return; // the rebuild already read the files as they are now
+        Map<String, Long> before = userTotals.remove(userId);
+        if (before != null) {
+            for (Map.Entry<String, Long> e : before.entrySet()) addTotal(e.getKey(), -e.getValue());
+        }
+        countHistory(userId);
+        if (activeDay != today()) {
+            activeDay = today();
+            activeUsers.clear();
+        }
+        if (activeToday) activeUsers.add(userId);
+        else activeUsers.remove(userId);
+        write();
+    }
+
+    private static void add(String userId, Map<String, ? extends Number> values, int sign) {
+        for (Map.Entry<String, ? extends Number> e : values.entrySet()) {
+            long value = e.getValue() == null ? 0 : e.getValue().longValue();
+            if (value <= 0) continue;
+            String key = totalKey(userId, e.getKey());
+            addTotal(key, sign * value);
+            Map<String, Long> share = userTotals.computeIfAbsent(userId, id -> new HashMap<>());
+            if (share.merge(key, sign * value, Long::sum) == 0) share.remove(key);
+        }
+    }
+
+    // The unit in the key decides whether the total counts towards hours
+    private static void addTotal(String key, long value) {
+        if (habitTotals.merge(key, value, Long::sum) == 0) habitTotals.remove(key);
+        if (key.substring(key.lastIndexOf(',') + 1).equals("hours")) totalHours += value;
+    }
+
+    // Adds a user's whole history, as the files hold it now, and records it as their share
+    private static void countHistory(String userId) {
+        HabitSeries series = UserFileHandler.readHabitSeries(userId);
+        Map<String, Long> share = new HashMap<>();
+        for (int h = 0; h < series.habits.length; h++) {
+            long total = HabitKernels.sumPositive(series.values[h], 0, series.dayCount());
+            if (total == 0) continue;
+            String key = totalKey(userId, series.habits[h]);
+            addTotal(key, total);
+            share.merge(key, total, Long::sum);
+            if (series.dayCount() > 0 && series.days[series.dayCount() - 1] == activeDay
+                    && series.has(h, series.dayCount() - 1)) {
+                activeUsers.add(userId);
+            }
+        }
+        if (!share.isEmpty()) userTotals.put(userId, share);
+    }
+
+    private static String totalKey(String userId, String habit) {
+        return habit + "," + UserFileHandler.habitUnit(userId, habit);
+    }
+
+    private static int today() {
+        return (int) LocalDate.now().toEpochDay();
+    }
+
+    // ----------------- Persistence -----------------
+
+    // true if the numbers were just rebuilt from the files
+    private static boolean ensureLoaded() {
+        if (loaded) return false;
+        loaded = true;
+        if (read()) return false;
+        rebuild();
+        write();
+        return true;
+    }
+
+    // One full pass over every user's history; only when there is no stats file yet
+    private static void rebuild() {
+        totalUsers = UserIndex.size();
+        totalHours = 0;
+        habitTotals.clear();
+        userTotals.clear();
+        activeUsers.clear();
+        activeDay = today();
+        for (UserRecord user : UserIndex.all()) countHistory(user.id);
+    }
+
+    // users=N / hours=N / activeDay=N / active=id;id / habit.<name>,<unit>=N /
+    // user.<id>:<name>,<unit>=N. A file from before units (habit.<name>=N) or
+    // without the users' shares is rebuilt
+    private static boolean read() {
+        if (!statsFile.exists()) return false;
+        try (BufferedReader br = new BufferedReader(new FileReader(statsFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int eq = line.indexOf('=');
+                if (eq < 0) continue;
+                String key = line.substring(0, eq), value = line.substring(eq + 1);
+                if (key.equals("users")) totalUsers = Integer.parseInt(value);
+                else if (key.equals("hours")) totalHours = Long.parseLong(value);
+                else if (key.equals("activeDay")) activeDay = Integer.parseInt(value);
+                else if (key.equals("active")) {
+                    for (String id : value.split(";")) if (!id.isEmpty()) activeUsers.add(id);
+                }
+                else if (key.startsWith("habit.")) {
+                    int comma = key.lastIndexOf(',');
+                    if (comma < 0) throw new IOException("Habit total without a unit");
+                    habitTotals.put(HabitRegistry.canonical(key.substring(6, comma)) + key.substring(comma), Long.parseLong(value));
+                }
+                else if (key.startsWith("user.")) {
+                    int colon = key.lastIndexOf(':', key.lastIndexOf(',')); // names hold no ':'
+                    userTotals.computeIfAbsent(key.substring(5, colon), id -> new HashMap<>())
+                              .put(key.substring(colon + 1), Long.parseLong(value));
+                }
+            }
+            if (!habitTotals.isEmpty() && userTotals.isEmpty()) throw new IOException("Totals without users' shares");
+            return true;
+        } catch (Exception e) {
+            habitTotals.clear();
+            userTotals.clear();
+            activeUsers.clear();
+            return false;
+        }
+    }
+
+    private static void write() {
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(statsFile, false))) {
+            bw.write("users=" + totalUsers);
+            bw.newLine();
+            bw.write("hours=" + totalHours);
+            bw.newLine();
+            bw.write("activeDay=" + activeDay);
+            bw.newLine();
+            bw.write("active=" + String.join(";", activeUsers));
+            bw.newLine();
+            for (Map.Entry<String, Long> e : habitTotals.entrySet()) {
+                bw.write("habit." + e.getKey() + "=" + e.getValue());
+                bw.newLine();
+            }
+            for (Map.Entry<String, Map<String, Long>> user : userTotals.entrySet()) {
+                for (Map.Entry<String, Long> e : user.getValue().entrySet()) {
+                    bw.write("user." + user.getKey() + ":" + e.getKey() + "=" + e.getValue());
+                    bw.newLine();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
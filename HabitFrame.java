@@ -175,14 +175,16 @@ public class HabitFrame extends JFrame {
         formPanel.setLayout(new GridBagLayout());
         formPanel.setBorder(BorderFactory.createEmptyBorder(24, 24, 24, 24));
 
-        String[] habits = {"Run", "Walking", "Study", "Playing", "Online Gaming", "Programming", "Problem Solving", "Sleeping"};
+        Map<String, Integer> userHabits = UserFileHandler.getUserHabits(userId);
+        String[] habits = userHabits.keySet().toArray(new String[0]);
         Map<String, JTextField> habitFields = new LinkedHashMap<>();
         GridBagConstraints gbc = new GridBagConstraints();
 
         for (int i = 0; i < habits.length; i++) {
             String habit = habits[i];
-            String unit = habit.equals("Problem Solving") ? "problems" : "hours";
-            String labelText = habit + " (" + unit + ")";
+            String unit = UserFileHandler.habitUnit(userId, habit);
+            int goal = userHabits.get(habit);
+            String labelText = habit + " (" + unit + (goal > 0 ? ", goal " + goal : "") + ")";
 
             // Label
             gbc.gridx = 0;
@@ -208,6 +210,18 @@ public class HabitFrame extends JFrame {
             formPanel.add(field, gbc);
         }
 
+        // Own habits are stored per user, so the form only grows for this user
+        gbc.gridx = 0;
+        gbc.gridy = habits.length;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.NONE;
+        gbc.anchor = GridBagConstraints.WEST;
+        gbc.insets = new Insets(8, 0, 0, 0);
+        JButton addHabitButton = createModernButton("➕ New Habit", FOREST_600, false);
+        addHabitButton.addActionListener(e -> showAddHabitDialog());
+        formPanel.add(addHabitButton, gbc);
+
         // Store habitFields reference for action listeners
         this.habitFields = habitFields;
         this.habits = habits;
@@ -316,25 +330,29 @@ public class HabitFrame extends JFrame {
 
         for (String habit : habits) {
             String val = habitFields.get(habit).getText().trim();
+            if (val.isEmpty()) continue; // left blank: not stored at all
             double num = 0.0;
             try {
-                if (!val.isEmpty()) {
-                    num = Double.parseDouble(val);
-                    if (num < 0) {
-                        showErrorDialog("Value for " + habit + " cannot be negative");
-                        return;
-                    }
+                num = Double.parseDouble(val);
+                if (num < 0) {
+                    showErrorDialog("Value for " + habit + " cannot be negative");
+                    return;
                 }
             } catch (NumberFormatException ex) {
                 showErrorDialog("Please enter a valid number for " + habit);
                 return;
             }
             habitData.put(habit, num);
-            if (!habit.equals("Problem Solving")) {
+            if (UserFileHandler.isTimed(userId, habit)) {
                 totalHours += num;
             }
         }
 
+        if (habitData.isEmpty()) {
+            showErrorDialog("Enter a value for at least one habit");
+            return;
+        }
+
         if (totalHours > 24) {
             showErrorDialog("Total hours cannot exceed 24 hours per day");
             return;
@@ -354,6 +372,37 @@ public class HabitFrame extends JFrame {
         habitFields.values().forEach(f -> f.setText(""));
     }
 
+    private void showAddHabitDialog() {
+        JTextField nameField = new JTextField();
+        JComboBox<String> unitBox = new JComboBox<>(new String[]{"hours", "times"});
+        JSpinner goalSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 1000, 1));
+
+        JPanel panel = new JPanel(new GridLayout(0, 1, 0, 6));
+        panel.add(new JLabel("Habit name:"));
+        panel.add(nameField);
+        panel.add(new JLabel("Measured in:"));
+        panel.add(unitBox);
+        panel.add(new JLabel("Daily goal (0 = none):"));
+        panel.add(goalSpinner);
+
+        int choice = JOptionPane.showConfirmDialog(this, panel, "New Habit",
+            JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION) return;
+
+        String name = nameField.getText().trim();
+        if (!UserFileHandler.addHabit(userId, name, (Integer) goalSpinner.getValue(), (String) unitBox.getSelectedItem())) {
+            showErrorDialog("Habit names must not be empty or contain ',' or ':'");
+            return;
+        }
+
+        // Rebuild the form so the new habit gets its own field
+        getContentPane().removeAll();
+        initializeComponents();
+        revalidate();
+        repaint();
+        showSuccessDialog("Added " + name + " to your habits");
+    }
+
     private void showErrorDialog(String message) {
         JOptionPane.showMessageDialog(this, "❌ " + message, "Input Error", JOptionPane.ERROR_MESSAGE);
     }
@@ -0,0 +1,212 @@
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregation loops over primitive habit columns (one value per day or per
+ * user). Each loop runs four independent accumulators with a scalar tail, so
+ * consecutive adds don't wait on each other, and works on unboxed arrays
+ * instead of streams of Integer/Double. Whether HotSpot also emits SIMD for
+ * them depends on the JVM and CPU; main() measures what they actually gain
+ * over the boxed streams they replaced. Habit values are never negative in
+ * the files; a value of 0 means "not done" and is left out of the means.
+ */
+public class HabitKernels {
+
+    // ----------------- int columns (raw daily values) -----------------
+
+    public static long sum(int[] values, int from, int to) {
+        long s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            s0 += values[i];
+            s1 += values[i + 1];
+            s2 += values[i + 2];
+            s3 += values[i + 3];
+        }
+        for (; i < to; i++) s0 += values[i];
+        return s0 + s1 + s2 + s3;
+    }
+
+    // Sum of the values > 0 only
+    public static long sumPositive(int[] values, int from, int to) {
+        long s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            s0 += Math.max(values[i], 0);
+            s1 += Math.max(values[i + 1], 0);
+            s2 += Math.max(values[i + 2], 0);
+            s3 += Math.max(values[i + 3], 0);
+        }
+        for (; i < to; i++) s0 += Math.max(values[i], 0);
+        return s0 + s1 + s2 + s3;
+    }
+
+    public static int countPositive(int[] values, int from, int to) {
+        int c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            c0 += values[i] > 0 ? 1 : 0;
+            c1 += values[i + 1] > 0 ? 1 : 0;
+            c2 += values[i + 2] > 0 ? 1 : 0;
+            c3 += values[i + 3] > 0 ? 1 : 0;
+        }
+        for (; i < to; i++) c0 += values[i] > 0 ? 1 : 0;
+        return c0 + c1 + c2 + c3;
+    }
+
+    public static int min(int[] values, int from, int to) {
+        int m0 = Integer.MAX_VALUE, m1 = Integer.MAX_VALUE, m2 = Integer.MAX_VALUE, m3 = Integer.MAX_VALUE;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            m0 = Math.min(m0, values[i]);
+            m1 = Math.min(m1, values[i + 1]);
+            m2 = Math.min(m2, values[i + 2]);
+            m3 = Math.min(m3, values[i + 3]);
+        }
+        for (; i < to; i++) m0 = Math.min(m0, values[i]);
+        return Math.min(Math.min(m0, m1), Math.min(m2, m3));
+    }
+
+    public static int max(int[] values, int from, int to) {
+        int m0 = Integer.MIN_VALUE, m1 = Integer.MIN_VALUE, m2 = Integer.MIN_VALUE, m3 = Integer.MIN_VALUE;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            m0 = Math.max(m0, values[i]);
+            m1 = Math.max(m1, values[i + 1]);
+            m2 = Math.max(m2, values[i + 2]);
+            m3 = Math.max(m3, values[i + 3]);
+        }
+        for (; i < to; i++) m0 = Math.max(m0, values[i]);
+        return Math.max(Math.max(m0, m1), Math.max(m2, m3));
+    }
+
+    // Mean over the days the habit was done; 0 if it never was
+    public static double meanPositive(int[] values, int from, int to) {
+        int count = countPositive(values, from, to);
+        return count > 0 ? (double) sumPositive(values, from, to) / count : 0.0;
+    }
+
+    // Sum of values[i] where mask[i] is 1 (mask holds only 0 or 1)
+    public static long maskedSum(int[] values, int[] mask, int from, int to) {
+        long s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            s0 += values[i] * mask[i];
+            s1 += values[i + 1] * mask[i + 1];
+            s2 += values[i + 2] * mask[i + 2];
+            s3 += values[i + 3] * mask[i + 3];
+        }
+        for (; i < to; i++) s0 += values[i] * mask[i];
+        return s0 + s1 + s2 + s3;
+    }
+
+    // ----------------- double columns (averages across habits or users) -----------------
+
+    // Mean of the values > 0; 0 if there are none
+    public static double meanPositive(double[] values, int from, int to) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            double v0 = values[i], v1 = values[i + 1], v2 = values[i + 2], v3 = values[i + 3];
+            s0 += v0 > 0 ? v0 : 0;
+            s1 += v1 > 0 ? v1 : 0;
+            s2 += v2 > 0 ? v2 : 0;
+            s3 += v3 > 0 ? v3 : 0;
+            c0 += v0 > 0 ? 1 : 0;
+            c1 += v1 > 0 ? 1 : 0;
+            c2 += v2 > 0 ? 1 : 0;
+            c3 += v3 > 0 ? 1 : 0;
+        }
+        for (; i < to; i++) {
+            s0 += values[i] > 0 ? values[i] : 0;
+            c0 += values[i] > 0 ? 1 : 0;
+        }
+        int count = c0 + c1 + c2 + c3;
+        return count > 0 ? (s0 + s1 + s2 + s3) / count : 0.0;
+    }
+
+    public static double max(double[] values, int from, int to) {
+        double m0 = Double.NEGATIVE_INFINITY, m1 = m0, m2 = m0, m3 = m0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            m0 = Math.max(m0, values[i]);
+            m1 = Math.max(m1, values[i + 1]);
+            m2 = Math.max(m2, values[i + 2]);
+            m3 = Math.max(m3, values[i + 3]);
+        }
+        for (; i < to; i++) m0 = Math.max(m0, values[i]);
+        return Math.max(Math.max(m0, m1), Math.max(m2, m3));
+    }
+
+    // Copy the values of a map into a primitive column (nulls become 0)
+    public static double[] toColumn(Collection<Double> values) {
+        double[] column = new double[values.size()];
+        int i = 0;
+        for (Double v : values) column[i++] = v == null ? 0.0 : v;
+        return column;
+    }
+
+    // ----------------- Benchmark -----------------
+
+    // Kernels against the boxed streams they replaced, on 7-day, one-year and many-user columns:
+    //   java HabitKernels [rounds]
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Random rnd = new Random(42);
+        for (int size : new int[]{ 7, 365, 100_000 }) {
+            int[] column = new int[size];
+            for (int i = 0; i < size; i++) column[i] = rnd.nextInt(3) == 0 ? 0 : rnd.nextInt(9);
+            List<Integer> boxed = Arrays.stream(column).boxed().collect(Collectors.toList());
+            int n = Math.max(1, rounds * 7 / size);
+
+            long kernelNanos = 0, streamNanos = 0;
+            for (int pass = 0; pass < 5; pass++) { // the first passes warm up the JIT; keep the last
+                kernelNanos = timeKernel(column, n);
+                streamNanos = timeStream(boxed, n);
+            }
+            System.out.printf("meanPositive over %,7d ints: kernel %9.1f ns, boxed stream %9.1f ns, %.1fx faster%n",
+                size, (double) kernelNanos / n, (double) streamNanos / n, (double) streamNanos / kernelNanos);
+        }
+
+        // What CompareFrame and HabitViewer do with a user's seven weekly averages, copy included
+        Map<String, Double> averages = new HashMap<>();
+        for (int h = 0; h < 7; h++) averages.put("habit" + h, rnd.nextInt(3) == 0 ? 0.0 : rnd.nextDouble() * 8);
+        long copyNanos = 0, streamNanos = 0;
+        for (int pass = 0; pass < 5; pass++) {
+            copyNanos = timeCopy(averages.values(), rounds);
+            streamNanos = timeDoubleStream(averages.values(), rounds);
+        }
+        System.out.printf("toColumn + meanPositive, 7 doubles: %9.1f ns, boxed stream %9.1f ns, %.1fx faster%n",
+            (double) copyNanos / rounds, (double) streamNanos / rounds, (double) streamNanos / copyNanos);
+    }
+
+    private static double sink; // keeps the JIT from dropping the measured work
+
+    private static long timeKernel(int[] column, int n) {
+        long start = System.nanoTime();
+        for (int r = 0; r < n; r++) sink += meanPositive(column, 0, column.length);
+        return System.nanoTime() - start;
+    }
+
+    private static long timeStream(List<Integer> boxed, int n) {
+        long start = System.nanoTime();
+        for (int r = 0; r < n; r++) sink += boxed.stream().filter(v -> v > 0).mapToInt(Integer::intValue).average().orElse(0.0);
+        return System.nanoTime() - start;
+    }
+
+    private static long timeCopy(Collection<Double> values, int n) {
+        long start = System.nanoTime();
+        for (int r = 0; r < n; r++) {
+            double[] column = toColumn(values);
+            sink += meanPositive(column, 0, column.length);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timeDoubleStream(Collection<Double> values, int n) {
+        long start = System.nanoTime();
+        for (int r = 0; r < n; r++) sink += values.stream().filter(v -> v > 0).mapToDouble(Double::doubleValue).average().orElse(0.0);
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The one place that knows where a user's files live under habits/. Files
+ * are spread over two levels of 256 subdirectories chosen by a hash of the
+ * id, e.g. habits/3f/a2/1986_habits.txt, so no directory grows past a few
+ * thousand entries even with millions of users.
+ *
+ * Files still in the old flat layout (habits/<id>_habits.txt, also what an
+ * admin may drop in by hand) are moved into their shard the first time they
+ * are looked up; running this class as a program moves all of them at once:
+ *
+ *   java HabitPaths
+ */
+public class HabitPaths {
+
+    public static final File ROOT = new File("habits");
+
+    // Single-file history of the old layout; TextFileStorage splits it into segments
+    public static File habitFile(String userId) {
+        return resolve(userId + "_habits.txt", userId);
+    }
+
+    // One period of a user's days: a plain month ("2026-10") or a compressed year ("2024")
+    public static File habitSegment(String userId, String period, boolean archive) {
+        return new File(new File(ROOT, shard(userId)), userId + "_habits." + period + (archive ? ".bin" : ".txt"));
+    }
+
+    // A year archive in the gzip'd text of before HabitRecordCodec; read, and replaced by the .bin on the next save
+    public static File gzipArchive(String userId, String year) {
+        return new File(new File(ROOT, shard(userId)), userId + "_habits." + year + ".gz");
+    }
+
+    // Every segment file of a user, found by listing only their shard
+    public static List<File> habitSegments(String userId) {
+        List<File> segments = new ArrayList<>();
+        File dir = new File(ROOT, shard(userId));
+        if (!dir.isDirectory()) return segments;
+        String prefix = userId + "_habits.";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir.toPath(),
+                p -> p.getFileName().toString().startsWith(prefix) && !p.getFileName().toString().equals(prefix + "txt"))) {
+            for (Path p : files) segments.add(p.toFile());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return segments;
+    }
+
+    public static File goalFile(String userId) {
+        return resolve(userId + "_goals.txt", userId);
+    }
+
+    public static File streakFile(String userId) {
+        return resolve(userId + "_streaks.txt", userId);
+    }
+
+    public static File rollupFile(String userId) {
+        return resolve(userId + "_rollups.txt", userId);
+    }
+
+    // "3f/a2": first four hex digits of the CRC32 of the id
+    static String shard(String userId) {
+        CRC32 crc = new CRC32();
+        crc.update(userId.getBytes(StandardCharsets.UTF_8));
+        String hex = String.format("%08x", crc.getValue());
+        return hex.substring(0, 2) + File.separator + hex.substring(2, 4);
+    }
+
+    // Id a per-user file name belongs to, or null for other files
+    static String userIdOf(String fileName) {
+        int segment = fileName.lastIndexOf("_habits.");
+        if (segment > 0) return fileName.substring(0, segment);
+        for (String suffix : new String[] { "_habits.txt", "_goals.txt", "_streaks.txt", "_rollups.txt" }) {
+            if (fileName.endsWith(suffix)) return fileName.substring(0, fileName.length() - suffix.length());
+        }
+        return null;
+    }
+
+    // A flat file that appeared while running replaces the sharded one (an admin's copy wins);
+    // returns where it now lives
+    static File adopt(File flat) {
+        String userId = userIdOf(flat.getName());
+        File target = new File(new File(ROOT, shard(userId)), flat.getName());
+        try {
+            target.getParentFile().mkdirs();
+            Files.move(flat.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return target;
+    }
+
+    private static File resolve(String name, String userId) {
+        File dir = new File(ROOT, shard(userId));
+        File file = new File(dir, name);
+        if (!file.exists()) {
+            File legacy = new File(ROOT, name);
+            if (legacy.exists()) move(legacy, file);
+        }
+        return file;
+    }
+
+    private static boolean move(File from, File to) {
+        try {
+            to.getParentFile().mkdirs();
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace(); // left where it is; the next lookup tries again
+            return false;
+        }
+    }
+
+    // ----------------- Lock -----------------
+    //
+    // habits/.lock is held shared by every running app (TextFileStorage takes it) and
+    // exclusively by tools that rewrite segments behind the app's back, so neither
+    // runs while the other does. The lock lasts until the JVM exits.
+
+    private static FileChannel lockChannel;
+    private static FileLock lock;
+
+    // Waits while a tool holds it exclusively
+    static synchronized void lockShared() throws IOException {
+        if (lock == null) lock = lockChannel().lock(0, Long.MAX_VALUE, true);
+    }
+
+    // false if an app (or another tool) holds it
+    static synchronized boolean tryLockExclusive() throws IOException {
+        if (lock == null) lock = lockChannel().tryLock(0, Long.MAX_VALUE, false);
+        return lock != null && !lock.isShared();
+    }
+
+    private static FileChannel lockChannel() throws IOException {
+        if (lockChannel == null) {
+            ROOT.mkdirs();
+            lockChannel = FileChannel.open(new File(ROOT, ".lock").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return lockChannel;
+    }
+
+    // ----------------- Migration tool -----------------
+
+    // Move every flat file into its shard; streams the directory so it works on huge listings
+    public static int migrate() throws IOException {
+        if (!ROOT.isDirectory()) return 0;
+        int moved = 0;
+        try (DirectoryStream<Path> flat = Files.newDirectoryStream(ROOT.toPath(), "*.txt")) {
+            for (Path p : flat) {
+                String name = p.getFileName().toString();
+                String userId = userIdOf(name);
+                if (userId == null) continue;
+                File target = new File(new File(ROOT, shard(userId)), name);
+                if (target.exists()) continue; // already migrated; the sharded copy is the live one
+                if (move(p.toFile(), target)) moved++;
+            }
+        }
+        return moved;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long start = System.currentTimeMillis();
+        int moved = migrate();
+        System.out.println("Moved " + moved + " files into shards in " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
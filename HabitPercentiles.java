@@ -0,0 +1,122 @@
+import java.util.*;
+
+/**
+ * Population distribution of weekly habit averages, one histogram per habit
+ * (plus "Overall"). Each histogram is a fixed set of buckets, so adding or
+ * removing a user is O(1) and a percentile lookup never touches user files.
+ * Built from WeeklyAverages, and again when that moves to a new day.
+ */
+public class HabitPercentiles {
+
+    // category -> histogram of every user's weekly average
+    private static final Map<String, Histogram> histograms = new HashMap<>();
+    // userId -> (category -> value currently counted), needed to take old values back out
+    private static final Map<String, Map<String, Double>> counted = new HashMap<>();
+    // WeeklyAverages version the histograms were built from
+    private static long loaded = -1;
+
+    // ----------------- Queries -----------------
+
+    // Share of users (0-100) doing less of this habit than the given value; -1 if nobody tracks it
+    public static synchronized double percentileRank(String category, double value) {
+        ensureLoaded();
+        Histogram h = histograms.get(category);
+        if (h == null || h.total == 0 || value <= 0) return -1;
+        return h.rankOf(value);
+    }
+
+    public static synchronized int trackedUsers(String category) {
+        ensureLoaded();
+        Histogram h = histograms.get(category);
+        return h == null ? 0 : h.total;
+    }
+
+    public static String describe(double percentile) {
+        if (percentile < 0) return "not ranked yet";
+        int p = (int) Math.round(percentile);
+        String suffix = (p % 100 >= 11 && p % 100 <= 13) ? "th"
+                : p % 10 == 1 ? "st" : p % 10 == 2 ? "nd" : p % 10 == 3 ? "rd" : "th";
+        return p + suffix + " percentile";
+    }
+
+    // ----------------- Updates -----------------
+
+    public static synchronized void onHabitSaved(String userId, Map<String, Double> weeklyAverages) {
+        if (!WeeklyAverages.isCurrent(loaded)) return;
+        updateUser(userId, weeklyAverages);
+    }
+
+    private static void ensureLoaded() {
+        if (WeeklyAverages.isCurrent(loaded)) return;
+        histograms.clear();
+        counted.clear();
+        Map<String, Map<String, Double>> weekly = new HashMap<>();
+        loaded = WeeklyAverages.load(weekly);
+        for (Map.Entry<String, Map<String, Double>> user : weekly.entrySet()) {
+            updateUser(user.getKey(), user.getValue());
+        }
+    }
+
+    private static void updateUser(String userId, Map<String, Double> weeklyAverages) {
+        Map<String, Double> previous = counted.remove(userId);
+        if (previous != null) {
+            for (Map.Entry<String, Double> e : previous.entrySet()) {
+                histograms.get(e.getKey()).remove(e.getValue());
+            }
+        }
+
+        Map<String, Double> current = new HashMap<>();
+        double total = 0.0;
+        int count = 0;
+        for (Map.Entry<String, Double> e : weeklyAverages.entrySet()) {
+            if (e.getValue() > 0) {
+                current.put(e.getKey(), e.getValue());
+                total += e.getValue();
+                count++;
+            }
+        }
+        if (count > 0) current.put(Leaderboard.OVERALL, total / count);
+
+        for (Map.Entry<String, Double> e : current.entrySet()) {
+            histograms.computeIfAbsent(e.getKey(), k -> new Histogram()).add(e.getValue());
+        }
+        if (!current.isEmpty()) counted.put(userId, current);
+    }
+
+    /**
+     * Buckets of 0.1 up to 51.2 (enough resolution for hours per day), then one
+     * bucket per doubling for outliers such as large problem counts.
+     */
+    private static class Histogram {
+        private static final int LINEAR_BUCKETS = 512;
+        private static final double LINEAR_LIMIT = LINEAR_BUCKETS / 10.0;
+        private static final int OVERFLOW_BUCKETS = 32;
+
+        private final int[] counts = new int[LINEAR_BUCKETS + OVERFLOW_BUCKETS];
+        private int total = 0;
+
+        void add(double value) {
+            counts[bucket(value)]++;
+            total++;
+        }
+
+        void remove(double value) {
+            counts[bucket(value)]--;
+            total--;
+        }
+
+        // Mid-rank: everyone strictly below plus half of the users in the same bucket
+        double rankOf(double value) {
+            int b = bucket(value);
+            long below = 0;
+            for (int i = 0; i < b; i++) below += counts[i];
+            return 100.0 * (below + counts[b] / 2.0) / total;
+        }
+
+        private static int bucket(double value) {
+            if (value < LINEAR_LIMIT) return Math.max(0, (int) (value * 10));
+            int doublings = (int) (Math.log(value / LINEAR_LIMIT) / Math.log(2));
+            return LINEAR_BUCKETS + Math.min(OVERFLOW_BUCKETS - 1, doublings);
+        }
+    }
+}
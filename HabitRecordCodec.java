@@ -0,0 +1,361 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact binary form of a run of habit days, used for the year archives of
+ * TextFileStorage. A block starts with the habit names it uses; each day then
+ * costs a varint offset from the first day, a presence bitmap over those
+ * names and one zigzag varint per value present - a few bytes instead of the
+ * ~100 characters of "Run:1,Walking:3,...".
+ *
+ *   "HRC2" header crc32c {record crc32c}*
+ *   header = names:varint {len:varint utf8}* first:zigzag count:varint
+ *   record = offset<<1|raw:varint len:varint body
+ *   body   = bitmap zigzag-varint*, or (raw) the utf8 text
+ *
+ * Every record carries its own CRC32C and its length, so a damaged day is
+ * skipped and reported while the days after it still decode. A broken length
+ * loses the place of every record after it, so those are all reported; the
+ * bytes survive in the copy TextFileStorage keeps in quarantine/ before it
+ * writes the year again. Blocks written before the checksums ("HRC1": no
+ * lengths or CRCs, each offset a gap from the previous day) still decode;
+ * their year is written as HRC2 the next time it changes.
+ *
+ * A day whose text would not come back byte for byte (a non-numeric value, a
+ * repeated habit, an unusual pair order) is kept raw, so decoding always
+ * returns exactly the lines that were encoded. Running the class measures
+ * size and speed on generated data:
+ *
+ *   java HabitRecordCodec [days]
+ */
+public class HabitRecordCodec {
+
+    private static final int MAGIC = 0x48524332; // "HRC2"
+    private static final int OLD_MAGIC = 0x48524331; // "HRC1", without checksums
+    private static final int MAX_RECORD = 1 << 16; // no day comes near this; a larger length is damage
+
+    // ----------------- Encoding -----------------
+
+    public static void encode(SortedMap<Integer, String> days, OutputStream os) throws IOException {
+        Map<String, Integer> index = nameOrder(days.values());
+        int first = days.isEmpty() ? 0 : days.firstKey();
+        CRC32C crc = new CRC32C();
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(64);
+        DataOutputStream b = new DataOutputStream(buf);
+        writeVarint(b, index.size());
+        for (String name : index.keySet()) writeBytes(b, name.getBytes(StandardCharsets.UTF_8));
+        writeVarint(b, zigzag(first));
+        writeVarint(b, days.size());
+        writeChecked(out, buf, crc);
+
+        byte[] bitmap = new byte[(index.size() + 7) / 8];
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+        DataOutputStream v = new DataOutputStream(body);
+        for (Map.Entry<Integer, String> day : days.entrySet()) {
+            int[] pairs = parse(day.getValue(), index);
+            body.reset();
+            if (pairs == null) {
+                v.write(day.getValue().getBytes(StandardCharsets.UTF_8));
+            } else {
+                Arrays.fill(bitmap, (byte) 0);
+                for (int p = 0; p < pairs.length; p += 2) bitmap[pairs[p] >> 3] |= (byte) (1 << (pairs[p] & 7));
+                v.write(bitmap);
+                for (int p = 1; p < pairs.length; p += 2) writeVarint(v, zigzag(pairs[p]));
+            }
+            buf.reset();
+            writeVarint(b, (day.getKey() - first) << 1 | (pairs == null ? 1 : 0));
+            writeVarint(b, body.size());
+            body.writeTo(b);
+            writeChecked(out, buf, crc);
+        }
+        out.flush();
+    }
+
+    // The bytes followed by their CRC32C
+    private static void writeChecked(DataOutputStream out, ByteArrayOutputStream buf, CRC32C crc) throws IOException {
+        byte[] bytes = buf.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        out.write(bytes);
+        out.writeInt((int) crc.getValue());
+    }
+
+    // Names numbered so that every line's pairs come in ascending order where possible: a
+    // topological order of "a is listed before b", ties broken by first appearance
+    private static Map<String, Integer> nameOrder(Collection<String> lines) {
+        Map<String, Integer> seen = new LinkedHashMap<>();
+        Map<Integer, Set<Integer>> after = new HashMap<>();
+        for (String kvs : lines) {
+            int prev = -1;
+            for (String pair : kvs.split(",")) {
+                int colon = pair.indexOf(':');
+                if (colon <= 0) continue;
+                int id = seen.computeIfAbsent(pair.substring(0, colon), n -> seen.size());
+                if (prev >= 0 && prev != id) after.computeIfAbsent(prev, k -> new HashSet<>()).add(id);
+                prev = id;
+            }
+        }
+        int[] incoming = new int[seen.size()];
+        for (Set<Integer> targets : after.values()) for (int t : targets) incoming[t]++;
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < incoming.length; i++) if (incoming[i] == 0) ready.add(i);
+        String[] names = seen.keySet().toArray(new String[0]);
+        Map<String, Integer> index = new LinkedHashMap<>();
+        while (!ready.isEmpty()) {
+            int id = ready.poll();
+            index.put(names[id], index.size());
+            for (int t : after.getOrDefault(id, Set.of())) if (--incoming[t] == 0) ready.add(t);
+        }
+        for (String name : names) index.putIfAbsent(name, index.size()); // a cycle: those lines go raw
+        return index;
+    }
+
+    // {nameIndex, value, ...} with ascending indexes, or null if the line must be kept raw
+    private static int[] parse(String kvs, Map<String, Integer> index) {
+        if (kvs.isEmpty()) return new int[0];
+        String[] parts = kvs.split(",", -1);
+        int[] pairs = new int[parts.length * 2];
+        int last = -1;
+        for (int i = 0; i < parts.length; i++) {
+            int colon = parts[i].indexOf(':');
+            if (colon <= 0) return null;
+            String text = parts[i].substring(colon + 1);
+            int value;
+            try { value = Integer.parseInt(text); }
+            catch (NumberFormatException e) { return null; }
+            if (!Integer.toString(value).equals(text)) return null; // "07", "+7" would not survive
+            String name = parts[i].substring(0, colon);
+            int id = index.get(name);
+            if (id <= last) return null;
+            last = id;
+            pairs[2 * i] = id;
+            pairs[2 * i + 1] = value;
+        }
+        return pairs;
+    }
+
+    // ----------------- Decoding -----------------
+
+    public static void decode(InputStream is, int from, int to, Map<Integer, String> into) throws IOException {
+        decode(is, from, to, into, null);
+    }
+
+    // Days in [from, to] into the map; stops reading once past to. A record that fails its
+    // checksum is skipped and described in damaged (when given); returns how many were skipped
+    public static int decode(InputStream is, int from, int to, Map<Integer, String> into, List<String> damaged) throws IOException {
+        CRC32C crc = new CRC32C();
+        DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(is), crc));
+        int magic = in.readInt();
+        if (magic == OLD_MAGIC) return decodeOld(in, from, to, into);
+        if (magic != MAGIC) throw new IOException("Not a habit record block");
+        crc.reset();
+        String[] names = new String[readVarint(in)];
+        for (int i = 0; i < names.length; i++) names[i] = new String(readBytes(in), StandardCharsets.UTF_8);
+        int first = unzigzag(readVarint(in));
+        int count = readVarint(in);
+        if ((int) crc.getValue() != in.readInt()) throw new IOException("Damaged habit record header");
+
+        int bitmapBytes = (names.length + 7) / 8;
+        int bad = 0;
+        int lastGood = first;
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < count; r++) {
+            int head, length;
+            byte[] body;
+            int sum;
+            try {
+                crc.reset();
+                head = readVarint(in);
+                length = readVarint(in);
+                if (length < 0 || length > MAX_RECORD) {
+                    return bad + damaged(damaged, count - r, "record " + r + " after " + LocalDate.ofEpochDay(lastGood) + " has a broken length, the rest of the block is unreadable");
+                }
+                body = new byte[length];
+                in.readFully(body);
+                sum = (int) crc.getValue();
+                if (sum != in.readInt()) {
+                    bad += damaged(damaged, 1, "record " + r + " after " + LocalDate.ofEpochDay(lastGood) + " fails its checksum: " + hex(body));
+                    continue;
+                }
+            } catch (EOFException e) {
+                return bad + damaged(damaged, count - r, "block ends at record " + r + " of " + count);
+            }
+
+            int day = first + (head >>> 1);
+            lastGood = day;
+            if (day > to) return bad;
+            if (day < from) continue;
+            if ((head & 1) != 0) {
+                into.put(day, new String(body, StandardCharsets.UTF_8));
+                continue;
+            }
+            sb.setLength(0);
+            int[] pos = { bitmapBytes };
+            for (int i = 0; i < names.length && bitmapBytes <= body.length; i++) {
+                if ((body[i >> 3] & (1 << (i & 7))) == 0) continue;
+                if (sb.length() > 0) sb.append(',');
+                sb.append(names[i]).append(':').append(unzigzag(readVarint(body, pos)));
+            }
+            into.put(day, sb.toString());
+        }
+        return bad;
+    }
+
+    // An HRC1 block: nothing to check, so nothing is ever reported damaged
+    private static int decodeOld(DataInputStream in, int from, int to, Map<Integer, String> into) throws IOException {
+        String[] names = new String[readVarint(in)];
+        for (int i = 0; i < names.length; i++) names[i] = new String(readBytes(in), StandardCharsets.UTF_8);
+        int day = unzigzag(readVarint(in));
+        int count = readVarint(in);
+
+        byte[] bitmap = new byte[(names.length + 7) / 8];
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < count; r++) {
+            int head = readVarint(in);
+            day += head >>> 1;
+            if (day > to) return 0;
+            boolean keep = day >= from;
+            if ((head & 1) != 0) {
+                byte[] raw = readBytes(in);
+                if (keep) into.put(day, new String(raw, StandardCharsets.UTF_8));
+                continue;
+            }
+            in.readFully(bitmap);
+            sb.setLength(0);
+            for (int i = 0; i < names.length; i++) {
+                if ((bitmap[i >> 3] & (1 << (i & 7))) == 0) continue;
+                int value = unzigzag(readVarint(in));
+                if (!keep) continue;
+                if (sb.length() > 0) sb.append(',');
+                sb.append(names[i]).append(':').append(value);
+            }
+            if (keep) into.put(day, sb.toString());
+        }
+        return 0;
+    }
+
+    private static int damaged(List<String> damaged, int records, String what) {
+        if (damaged != null) damaged.add(what);
+        return records;
+    }
+
+    private static String hex(byte[] b) {
+        StringBuilder sb = new StringBuilder(b.length * 2);
+        for (byte x : b) sb.append(String.format("%02x", x));
+        return sb.toString();
+    }
+
+    // ----------------- Varints -----------------
+
+    static void writeVarint(DataOutput out, int v) throws IOException {
+        while ((v & ~0x7f) != 0) {
+            out.writeByte((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    // From a record body already checked against its CRC; pos[0] is advanced past the varint
+    private static int readVarint(byte[] b, int[] pos) {
+        int v = 0;
+        for (int shift = 0; shift < 35 && pos[0] < b.length; shift += 7) {
+            int x = b[pos[0]++];
+            v |= (x & 0x7f) << shift;
+            if ((x & 0x80) == 0) return v;
+        }
+        return v;
+    }
+
+    static int readVarint(DataInput in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeBytes(DataOutput out, byte[] b) throws IOException {
+        writeVarint(out, b.length);
+        out.write(b);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        byte[] b = new byte[readVarint(in)];
+        in.readFully(b);
+        return b;
+    }
+
+    // ----------------- Benchmark -----------------
+
+    public static void main(String[] args) throws IOException {
+        int dayCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String[] habits = { "Run", "Walking", "Study", "Playing", "Online Gaming", "Sleep", "Reading", "Meditation" };
+        Random rnd = new Random(42);
+        SortedMap<Integer, String> days = new TreeMap<>();
+        int day = (int) LocalDate.of(2000, 1, 1).toEpochDay();
+        for (int i = 0; i < dayCount; i++) {
+            day += rnd.nextInt(10) < 8 ? 1 : 2 + rnd.nextInt(3);
+            StringBuilder sb = new StringBuilder();
+            for (String h : habits) {
+                if (rnd.nextInt(3) == 0) continue;
+                if (sb.length() > 0) sb.append(',');
+                sb.append(h).append(':').append(rnd.nextInt(9));
+            }
+            days.put(day, sb.toString());
+        }
+
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (Writer w = new OutputStreamWriter(text, StandardCharsets.UTF_8);
+             Writer g = new OutputStreamWriter(new GZIPOutputStream(gzip), StandardCharsets.UTF_8)) {
+            for (Map.Entry<Integer, String> e : days.entrySet()) {
+                String line = LocalDate.ofEpochDay(e.getKey()) + "," + e.getValue() + "\n";
+                w.write(line);
+                g.write(line);
+            }
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        encode(days, encoded);
+        byte[] bytes = encoded.toByteArray();
+
+        Map<Integer, String> back = new TreeMap<>();
+        decode(new ByteArrayInputStream(bytes), Integer.MIN_VALUE, Integer.MAX_VALUE, back);
+        if (!back.equals(days)) throw new AssertionError("Round trip changed the data");
+
+        System.out.printf("%,d days: text %,d B (%.1f B/day), gzip %,d B, codec %,d B (%.1f B/day, %.1fx smaller than text)%n",
+            dayCount, text.size(), (double) text.size() / dayCount, gzip.size(),
+            bytes.length, (double) bytes.length / dayCount, (double) text.size() / bytes.length);
+
+        int rounds = 20;
+        for (int warm = 0; warm < 2; warm++) { // first pass warms up the JIT
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) encode(days, new ByteArrayOutputStream(bytes.length));
+            long encodeNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) decode(new ByteArrayInputStream(bytes), Integer.MIN_VALUE, Integer.MAX_VALUE, new HashMap<>());
+            long decodeNanos = System.nanoTime() - start;
+            if (warm == 0) continue;
+            System.out.printf("encode %.1f M days/s, decode %.1f M days/s (%.0f MB/s of text)%n",
+                rounds * dayCount * 1e3 / encodeNanos, rounds * dayCount * 1e3 / decodeNanos,
+                rounds * (double) text.size() * 1e3 / decodeNanos);
+        }
+    }
+}
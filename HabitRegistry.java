@@ -0,0 +1,137 @@
+import java.util.*;
+
+/**
+ * Process-wide dictionary of habit names. Every habit gets a small integer id
+ * and one canonical String instance, together with its icon. Units belong to
+ * the user who defined the habit and live in their goals file (see
+ * UserFileHandler.habitUnit); the registry only knows the built-in ones. The
+ * file parser looks names up straight from the line's characters, so reading
+ * a day does not allocate a key per habit, and callers can index arrays by id
+ * instead of hashing names.
+ */
+public class HabitRegistry {
+
+    public static final String DEFAULT_ICON = "📋";
+
+    private static class Habit {
+        final int id;
+        final String name;
+        final int hash;
+        final String icon;
+        final String unit;
+
+        Habit(int id, String name, String icon, String unit) {
+            this.id = id;
+            this.name = name;
+            this.hash = name.hashCode();
+            this.icon = icon;
+            this.unit = unit;
+        }
+    }
+
+    // Copy-on-write: readers (including parallel parsers) never lock, new names are rare
+    private static volatile Habit[] byId = new Habit[0];
+    private static volatile Habit[] table = new Habit[64]; // open addressing by name hash
+    private static final List<String> defaults = new ArrayList<>();
+
+    static {
+        registerDefault("Run", "🏃", "hours");
+        registerDefault("Walking", "🚶", "hours");
+        registerDefault("Study", "📚", "hours");
+        registerDefault("Playing", "🎮", "hours");
+        registerDefault("Online Gaming", "🎯", "hours");
+        registerDefault("Programming", "💻", "hours");
+        registerDefault("Problem Solving", "🧩", "problems");
+        registerDefault("Sleeping", "💤", "hours");
+    }
+
+    // ----------------- Lookups -----------------
+
+    // Id of a habit, registering it on first sight
+    public static int id(String name) {
+        Habit h = find(name, 0, name.length());
+        return h != null ? h.id : register(name, DEFAULT_ICON, "hours").id;
+    }
+
+    // Id of the habit spelled by s[from, to), without creating a substring when it is known
+    public static int id(String s, int from, int to) {
+        Habit h = find(s, from, to);
+        return h != null ? h.id : register(s.substring(from, to), DEFAULT_ICON, "hours").id;
+    }
+
+    public static String name(int id) {
+        return byId[id].name;
+    }
+
+    // The shared instance for this name
+    public static String canonical(String name) {
+        return name(id(name));
+    }
+
+    public static String icon(String name) {
+        Habit h = find(name, 0, name.length());
+        return h != null ? h.icon : DEFAULT_ICON;
+    }
+
+    // Unit of a built-in habit; "hours" for anything else unless a user's goals file says otherwise
+    public static String unit(String name) {
+        Habit h = find(name, 0, name.length());
+        return h != null ? h.unit : "hours";
+    }
+
+    // Habits every user gets, in form order
+    public static List<String> defaults() {
+        return Collections.unmodifiableList(defaults);
+    }
+
+    public static int size() {
+        return byId.length;
+    }
+
+    // ----------------- Internals -----------------
+
+    private static void registerDefault(String name, String icon, String unit) {
+        defaults.add(register(name, icon, unit).name);
+    }
+
+    private static synchronized Habit register(String name, String icon, String unit) {
+        Habit existing = find(name, 0, name.length());
+        if (existing != null) return existing;
+
+        Habit habit = new Habit(byId.length, name, icon, unit);
+        Habit[] ids = Arrays.copyOf(byId, byId.length + 1);
+        ids[habit.id] = habit;
+
+        Habit[] t = table;
+        t = ids.length * 2 > t.length ? new Habit[t.length * 2] : t.clone();
+        if (t.length != table.length) {
+            for (Habit h : byId) insert(t, h);
+        }
+        insert(t, habit);
+
+        byId = ids;   // publish the id first so a reader that finds it in the table can resolve it
+        table = t;
+        return habit;
+    }
+
+    private static void insert(Habit[] t, Habit habit) {
+        int mask = t.length - 1;
+        int i = habit.hash & mask;
+        while (t[i] != null) i = (i + 1) & mask;
+        t[i] = habit;
+    }
+
+    private static Habit find(String s, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) hash = 31 * hash + s.charAt(i); // same as String.hashCode
+        Habit[] t = table;
+        int mask = t.length - 1;
+        for (int i = hash & mask; t[i] != null; i = (i + 1) & mask) {
+            Habit h = t[i];
+            if (h.hash == hash && h.name.length() == to - from && s.regionMatches(from, h.name, 0, to - from)) {
+                return h;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,268 @@
+import java.io.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Weekly and monthly aggregates (sum, days done, min, max) per user and
+ * habit, stored next to the daily data in the user's _rollups.txt. A save
+ * recomputes only the week and month containing that day; a background job
+ * re-reads every user's current and previous week and month now and then in
+ * case files were changed behind the app's back (DataWatcher rebuilds a user
+ * it sees edited). A chart over a year reads ~52 weekly points instead of 365
+ * day lines. Only recently used users are kept in memory.
+ */
+public class HabitRollups {
+
+    public enum Tier { WEEK, MONTH }
+
+    public static class Point {
+        public final int start;     // epoch day the period starts on (Monday / 1st of month)
+        public final long sum;
+        public final int validDays; // days with a value > 0
+        public final int min;       // over the valid days, 0 if none
+        public final int max;
+
+        Point(int start, long sum, int validDays, int min, int max) {
+            this.start = start;
+            this.sum = sum;
+            this.validDays = validDays;
+            this.min = min;
+            this.max = max;
+        }
+
+        public double mean() {
+            return validDays > 0 ? (double) sum / validDays : 0.0;
+        }
+
+        public LocalDate startDate() {
+            return LocalDate.ofEpochDay(start);
+        }
+    }
+
+    private static final long REBUILD_HOURS = 6;
+    private static final int MAX_CACHED_USERS = 1024;
+
+    // userId -> tier -> habit -> period start -> point; every change is written through, so
+    // the least recently used user can be dropped and read back from _rollups.txt
+    private static final Map<String, EnumMap<Tier, Map<String, TreeMap<Integer, Point>>>> cache =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EnumMap<Tier, Map<String, TreeMap<Integer, Point>>>> eldest) {
+                return size() > MAX_CACHED_USERS;
+            }
+        };
+    // userId -> number of saves seen, so a background rebuild never overwrites a newer save
+    private static final Map<String, Integer> versions = new HashMap<>();
+    private static ScheduledExecutorService rebuilder = null;
+
+    // ----------------- Queries -----------------
+
+    // Periods of one habit overlapping [fromDay, toDay], oldest first
+    public static synchronized List<Point> points(String userId, Tier tier, String habit, int fromDay, int toDay) {
+        TreeMap<Integer, Point> periods = load(userId).get(tier).get(habit);
+        if (periods == null) return new ArrayList<>();
+        return new ArrayList<>(periods.subMap(periodStart(tier, fromDay), true, toDay, true).values());
+    }
+
+    // Habits that have at least one rollup for this user
+    public static synchronized Set<String> habits(String userId) {
+        return new LinkedHashSet<>(load(userId).get(Tier.WEEK).keySet());
+    }
+
+    public static int periodStart(Tier tier, int day) {
+        if (tier == Tier.WEEK) return day - Math.floorMod(day + 3, 7); // epoch day 0 was a Thursday
+        return (int) LocalDate.ofEpochDay(day).withDayOfMonth(1).toEpochDay();
+    }
+
+    // ----------------- Updates -----------------
+
+    // Called by saveHabit: only the week and month containing the day are recomputed
+    public static synchronized void onHabitSaved(String userId, String date) {
+        int day;
+        try { day = (int) LocalDate.parse(date).toEpochDay(); }
+        catch (Exception e) { return; }
+
+        EnumMap<Tier, Map<String, TreeMap<Integer, Point>>> rollups = load(userId);
+        int weekStart = periodStart(Tier.WEEK, day);
+        int monthStart = periodStart(Tier.MONTH, day);
+        int monthEnd = (int) LocalDate.ofEpochDay(monthStart).plusMonths(1).toEpochDay() - 1;
+        HabitSeries series = UserFileHandler.readHabitSeries(userId,
+            Math.min(weekStart, monthStart), Math.max(weekStart + 6, monthEnd));
+
+        replacePeriod(rollups.get(Tier.WEEK), Tier.WEEK, weekStart, series);
+        replacePeriod(rollups.get(Tier.MONTH), Tier.MONTH, monthStart, series);
+        versions.merge(userId, 1, Integer::sum);
+        write(userId, rollups);
+    }
+
+    // Recompute one user from their full history
+    public static void rebuild(String userId) {
+        int version;
+        synchronized (HabitRollups.class) {
+            version = versions.getOrDefault(userId, 0);
+        }
+        EnumMap<Tier, Map<String, TreeMap<Integer, Point>>> rollups = compute(UserFileHandler.readHabitSeries(userId));
+        synchronized (HabitRollups.class) {
+            if (versions.getOrDefault(userId, 0) != version) return; // a save got in first; it is newer
+            cache.put(userId, rollups);
+            write(userId, rollups);
+        }
+    }
+
+    // Recompute one user's current and previous week and month from just those days
+    static void refreshRecent(String userId) {
+        int today = (int) LocalDate.now().toEpochDay();
+        int monthStart = periodStart(Tier.MONTH, today);
+        int[] weeks = { periodStart(Tier.WEEK, today - 7), periodStart(Tier.WEEK, today) };
+        int[] months = { periodStart(Tier.MONTH, monthStart - 1), monthStart };
+        int monthEnd = (int) LocalDate.ofEpochDay(monthStart).plusMonths(1).toEpochDay() - 1;
+        int version;
+        synchronized (HabitRollups.class) {
+            version = versions.getOrDefault(userId, 0);
+        }
+        HabitSeries series = UserFileHandler.readHabitSeries(userId,
+            Math.min(weeks[0], months[0]), Math.max(weeks[1] + 6, monthEnd));
+        synchronized (HabitRollups.class) {
+            if (versions.getOrDefault(userId, 0) != version) return; // a save got in first; it is newer
+            EnumMap<Tier, Map<String, TreeMap<Integer, Point>>> rollups = cache.get(userId);
+            if (rollups == null) rollups = read(userId); // not cached: only the file is updated
+            if (rollups == null) return; // nothing built yet; the first query builds it in full
+            for (int start : weeks) replacePeriod(rollups.get(Tier.WEEK), Tier.WEEK, start, series);
+            for (int start : months) replacePeriod(rollups.get(Tier.MONTH), Tier.MONTH, start, series);
+            write(userId, rollups);
+        }
+    }
+
+    // Start the periodic refresh on a daemon thread; safe to call more than once
+    public static synchronized void startBackgroundRebuild() {
+        if (rebuilder != null) return;
+        rebuilder = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "habit-rollups");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        rebuilder.scheduleWithFixedDelay(() -> {
+            try {
+                for (UserRecord user : UserIndex.all()) refreshRecent(user.id);
+            } catch (Exception e) {
+                e.printStackTrace(); // keep the schedule alive
+            }
+        }, 1, REBUILD_HOURS * 60, TimeUnit.MINUTES);
+    }
+
+    // ----------------- Computation -----------------
+
+    private static EnumMap<Tier, Map<String, TreeMap<Integer, Point>>> compute(HabitSeries series) {
+        EnumMap<Tier, Map<String, TreeMap<Integer, Point>>> rollups = empty();
+        for (Tier tier : Tier.values()) {
+            Map<String, TreeMap<Integer, Point>> byHabit = rollups.get(tier);
+            int d = 0;
+            while (d < series.dayCount()) {
+                int start = periodStart(tier, series.days[d]);
+                int end = d;
+                while (end < series.dayCount() && periodStart(tier, series.days[end]) == start) end++;
+                for (int h = 0; h < series.habits.length; h++) {
+                    Point p = aggregate(series.values[h], d, end, start);
+                    if (p != null) byHabit.computeIfAbsent(series.habits[h], k -> new TreeMap<>()).put(start, p);
+                }
+                d = end;
+            }
+        }
+        return rollups;
+    }
+
+    private static void replacePeriod(Map<String, TreeMap<Integer, Point>> byHabit, Tier tier, int start, HabitSeries series) {
+        for (TreeMap<Integer, Point> periods : byHabit.values()) periods.remove(start);
+        int from = 0;
+        while (from < series.dayCount() && periodStart(tier, series.days[from]) != start) from++;
+        int to = from;
+        while (to < series.dayCount() && periodStart(tier, series.days[to]) == start) to++;
+        for (int h = 0; h < series.habits.length; h++) {
+            Point p = aggregate(series.values[h], from, to, start);
+            if (p != null) byHabit.computeIfAbsent(series.habits[h], k -> new TreeMap<>()).put(start, p);
+        }
+        byHabit.values().removeIf(TreeMap::isEmpty);
+    }
+
+    // null when the habit wasn't written at all in [from, to)
+    private static Point aggregate(int[] column, int from, int to, int start) {
+        if (HabitKernels.max(column, from, to) == HabitSeries.MISSING) return null;
+        int valid = HabitKernels.countPositive(column, from, to);
+        int min = 0;
+        if (valid > 0) {
+            min = Integer.MAX_VALUE;
+            for (int d = from; d < to; d++) if (column[d] > 0) min = Math.min(min, column[d]);
+        }
+        return new Point(start, HabitKernels.sumPositive(column, from, to), valid, min,
+                         Math.max(0, HabitKernels.max(column, from, to)));
+    }
+
+    private static EnumMap<Tier, Map<String, TreeMap<Integer, Point>>> empty() {
+        EnumMap<Tier, Map<String, TreeMap<Integer, Point>>> rollups = new EnumMap<>(Tier.class);
+        for (Tier tier : Tier.values()) rollups.put(tier, new LinkedHashMap<>());
+        return rollups;
+    }
+
+    // ----------------- Persistence -----------------
+
+    private static EnumMap<Tier, Map<String, TreeMap<Integer, Point>>> load(String userId) {
+        EnumMap<Tier, Map<String, TreeMap<Integer, Point>>> rollups = cache.get(userId);
+        if (rollups != null) return rollups;
+        rollups = read(userId);
+        if (rollups == null) {
+            rollups = compute(UserFileHandler.readHabitSeries(userId));
+            write(userId, rollups);
+        }
+        cache.put(userId, rollups);
+        return rollups;
+    }
+
+    private static File file(String userId) {
+        return HabitPaths.rollupFile(userId);
+    }
+
+    // One line per point: W|M,start,habit,sum,validDays,min,max
+    private static EnumMap<Tier, Map<String, TreeMap<Integer, Point>>> read(String userId) {
+        File f = file(userId);
+        if (!f.exists()) return null;
+        EnumMap<Tier, Map<String, TreeMap<Integer, Point>>> rollups = empty();
+        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] p = line.split(",");
+                if (p.length < 7) continue;
+                Tier tier = p[0].equals("W") ? Tier.WEEK : Tier.MONTH;
+                int start = Integer.parseInt(p[1]);
+                rollups.get(tier).computeIfAbsent(HabitRegistry.canonical(p[2]), k -> new TreeMap<>())
+                    .put(start, new Point(start, Long.parseLong(p[3]), Integer.parseInt(p[4]),
+                                          Integer.parseInt(p[5]), Integer.parseInt(p[6])));
+            }
+        } catch (Exception e) {
+            return null; // unreadable: recomputed from the habit file
+        }
+        return rollups;
+    }
+
+    private static void write(String userId, EnumMap<Tier, Map<String, TreeMap<Integer, Point>>> rollups) {
+        File f = file(userId);
+        f.getParentFile().mkdirs();
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(f, false))) {
+            for (Map.Entry<Tier, Map<String, TreeMap<Integer, Point>>> tier : rollups.entrySet()) {
+                String tag = tier.getKey() == Tier.WEEK ? "W" : "M";
+                for (Map.Entry<String, TreeMap<Integer, Point>> habit : tier.getValue().entrySet()) {
+                    for (Point p : habit.getValue().values()) {
+                        bw.write(tag + "," + p.start + "," + habit.getKey() + "," + p.sum + ","
+                                 + p.validDays + "," + p.min + "," + p.max);
+                        bw.newLine();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
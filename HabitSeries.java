@@ -0,0 +1,62 @@
+import java.time.LocalDate;
+
+/**
+ * A run of consecutive days of one user's habits held in primitive arrays:
+ * days[d] is the epoch day of column d and values[h][d] the value of habits[h]
+ * on that day. A habit that was not written on a day holds MISSING, which
+ * the positive-only HabitKernels skip on their own.
+ */
+public class HabitSeries {
+
+    public static final int MISSING = -1;
+
+    public final int[] days;      // epoch days, ascending, one per calendar day
+    public final String[] habits; // in order of first appearance in the file
+    public final int[][] values;  // [habit][day]
+
+    HabitSeries(int[] days, String[] habits, int[][] values) {
+        this.days = days;
+        this.habits = habits;
+        this.values = values;
+    }
+
+    public int dayCount() {
+        return days.length;
+    }
+
+    public int habitIndex(String habit) {
+        for (int h = 0; h < habits.length; h++) {
+            if (habits[h].equals(habit)) return h;
+        }
+        return -1;
+    }
+
+    public String date(int day) {
+        return LocalDate.ofEpochDay(days[day]).toString();
+    }
+
+    public boolean has(int habit, int day) {
+        return values[habit][day] != MISSING;
+    }
+
+    // Value as shown to users: a missing entry reads as 0
+    public int value(int habit, int day) {
+        return Math.max(values[habit][day], 0);
+    }
+
+    // Mean over the days the habit was done (> 0)
+    public double meanPositive(int habit) {
+        return HabitKernels.meanPositive(values[habit], 0, days.length);
+    }
+
+    // 1 for days on which any habit was done, else 0
+    public int[] activeDays() {
+        int[] active = new int[days.length];
+        for (int[] column : values) {
+            for (int d = 0; d < days.length; d++) {
+                active[d] |= column[d] > 0 ? 1 : 0;
+            }
+        }
+        return active;
+    }
+}
@@ -0,0 +1,60 @@
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Where users, habit days and goals are kept. UserFileHandler talks only to
+ * this interface; the indexes and engines on top of it don't care which
+ * backend is in use. A habit day is stored as its raw "Habit:val,..." text,
+ * keyed by user and epoch day.
+ *
+ * The backend is picked once at startup with -Dhabit.storage=text|kv|sql
+ * (default text, the users.txt / habits/ files).
+ */
+public interface HabitStorage {
+
+    // ----------------- Users -----------------
+
+    List<UserRecord> readUsers();
+
+    void addUser(UserRecord record) throws IOException;
+
+    // Replace the stored user with the same id; false if there is none
+    boolean updateUser(UserRecord record) throws IOException;
+
+    // Bloom filter over the ids of the last readUsers, if the backend keeps one; null and
+    // UserIndex builds its own
+    default BloomFilter idFilter() {
+        return null;
+    }
+
+    // ----------------- Habit days -----------------
+
+    // Day lines of one user with epoch day in [from, to], ascending
+    SortedMap<Integer, String> readDays(String userId, int from, int to);
+
+    // Store one day, returning the line it replaced or null
+    String putDay(String userId, int day, String kvs) throws IOException;
+
+    // ----------------- Goals -----------------
+
+    // habit name -> "name,goal,unit", in the order they were added
+    Map<String, String> readGoals(String userId);
+
+    void writeGoals(String userId, Collection<String> lines) throws IOException;
+
+    // Called once on clean shutdown
+    default void close() throws IOException {
+    }
+
+    // ----------------- Backends -----------------
+
+    static HabitStorage open(String kind) {
+        switch (kind) {
+            case "kv": return KeyValueStorage.open(new java.io.File(System.getProperty("habit.storage.dir", "kvstore")));
+            case "sql": return JdbcStorage.open(System.getProperty("habit.storage.url", "jdbc:h2:./habitdb"),
+                                                Integer.getInteger("habit.storage.pool", 4));
+            case "text": return new TextFileStorage();
+            default: throw new IllegalArgumentException("Unknown habit.storage: " + kind);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks every habit segment under habits/ against its checksums, many files
+ * at a time, and lists the damaged records:
+ *
+ *   java HabitVerifier               report only
+ *   java HabitVerifier --quarantine  also copy each damaged segment and its
+ *                                    damaged records to quarantine/, then
+ *                                    rewrite the segment without them
+ *
+ * A segment whose whole block is unreadable is moved to quarantine/ as is.
+ * --quarantine is for when the app is stopped: it takes habits/.lock, which a
+ * running app holds, and refuses to start (status 2) if it can't. Exits with
+ * status 1 if anything was damaged.
+ */
+public class HabitVerifier {
+
+    public static void main(String[] args) throws IOException {
+        boolean quarantine = Arrays.asList(args).contains("--quarantine");
+        if (quarantine && !HabitPaths.tryLockExclusive()) {
+            System.err.println("habits/ is in use by a running app; stop it before running with --quarantine");
+            System.exit(2);
+        }
+        long start = System.currentTimeMillis();
+
+        List<File> files;
+        try (Stream<Path> walk = Files.walk(HabitPaths.ROOT.toPath())) {
+            files = walk.filter(Files::isRegularFile)
+                        .map(Path::toFile)
+                        .filter(f -> f.getName().contains("_habits.") && (f.getName().endsWith(".txt") || f.getName().endsWith(".bin") || f.getName().endsWith(".gz")))
+                        .collect(Collectors.toList());
+        }
+
+        AtomicLong records = new AtomicLong(), bytes = new AtomicLong(), badFiles = new AtomicLong(), badRecords = new AtomicLong();
+        files.parallelStream().forEach(f -> {
+            bytes.addAndGet(f.length());
+            SortedMap<Integer, String> days = new TreeMap<>();
+            List<String> damaged = new ArrayList<>();
+            int bad;
+            try {
+                bad = TextFileStorage.readSegment(f, Integer.MIN_VALUE, Integer.MAX_VALUE, days, damaged);
+            } catch (IOException e) {
+                badFiles.incrementAndGet();
+                report(f + ": unreadable (" + e.getMessage() + ")");
+                if (quarantine) moveToQuarantine(f);
+                return;
+            }
+            records.addAndGet(days.size() + bad);
+            if (bad == 0) return;
+            badFiles.incrementAndGet();
+            badRecords.addAndGet(bad);
+            for (String d : damaged) report(f.getParent() + File.separator + d);
+            if (quarantine) {
+                try {
+                    TextFileStorage.quarantine(f, damaged);
+                    TextFileStorage.writeSegment(f, days);
+                } catch (IOException e) {
+                    report(f + ": could not quarantine (" + e.getMessage() + ")");
+                }
+            }
+        });
+
+        long millis = Math.max(1, System.currentTimeMillis() - start);
+        System.out.printf("Checked %,d files, %,d records, %.1f MB in %d ms (%.0f MB/s): %,d damaged records in %,d files%s%n",
+            files.size(), records.get(), bytes.get() / 1e6, millis, bytes.get() / 1e3 / millis,
+            badRecords.get(), badFiles.get(), quarantine && badFiles.get() > 0 ? ", moved to quarantine/" : "");
+        if (badFiles.get() > 0) System.exit(1);
+    }
+
+    private static synchronized void report(String line) {
+        System.out.println(line);
+    }
+
+    private static void moveToQuarantine(File f) {
+        File target = new File("quarantine", f.getName());
+        try {
+            target.getParentFile().mkdirs();
+            Files.move(f.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            report(f + ": could not quarantine (" + e.getMessage() + ")");
+        }
+    }
+}
@@ -4,14 +4,13 @@ import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.JTableHeader;
 import javax.swing.border.AbstractBorder;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.geom.RoundRectangle2D;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.Set;
-import java.util.LinkedHashSet;
 import java.util.HashMap;
 
 public class HabitViewer extends JFrame {
@@ -46,9 +45,23 @@ public class HabitViewer extends JFrame {
     // Data for average calculation
     private Map<String, Double> habitAverages = new HashMap<>();
     private Map<String, Integer> habitValidDays = new HashMap<>();
+    // Last 7 days of this user's habits, re-read only when one of those days is saved
+    private HabitSeries week;
+    private final String viewType;
+    private final DataChangeListener dataListener = this::onDataChanged;
+
+    // What is on screen, so a save rewrites only the rows and cards it touches
+    private DefaultTableModel tableModel;
+    private JPanel chartPanel;
+    private final Map<String, JLabel[]> statLabels = new HashMap<>(); // card title -> {value, subtitle}
+    private String[] trendHabits;
+    private double[][] trendMeans;
+    private int trendFirstWeek;
 
     public HabitViewer(String title, String userId, String viewType) {
         this.userId = userId;
+        this.viewType = viewType;
+        this.week = UserFileHandler.readHabitSeries(userId, 7);
 
         setTitle(title + " - " + UserFileHandler.getUserName(userId));
         setSize(1000, 700);
@@ -58,29 +71,113 @@ public class HabitViewer extends JFrame {
         getContentPane().setBackground(BACKGROUND_COLOR);
         setLayout(new BorderLayout());
 
+        showView();
+
+        DataEvents.subscribe(dataListener);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                DataEvents.unsubscribe(dataListener);
+            }
+        });
+    }
+
+    private void showView() {
         if(viewType.equalsIgnoreCase("today")) showToday();
+        else if(viewType.equalsIgnoreCase("year")) showLastYear();
         else showLast7Days();
     }
 
-    private void showToday() {
-        Map<String,Integer> todayMap = UserFileHandler.loadHabit(userId, LocalDate.now().toString());
-        Map<String, Map<String,Integer>> allData = UserFileHandler.loadHabitsWithDate(userId);
+    // Saves of other users, or of days this view doesn't show, are ignored
+    private void onDataChanged(DataChangeEvent event) {
+        if(!event.isHabitDayOf(userId)) return;
+        Integer changed = null; // null: the whole file changed
+        if(event.date != null) {
+            int day;
+            try { day = (int) LocalDate.parse(event.date).toEpochDay(); }
+            catch(Exception e) { return; }
+            int today = (int) LocalDate.now().toEpochDay();
+            int shownFrom = viewType.equalsIgnoreCase("today") ? today
+                          : viewType.equalsIgnoreCase("year") ? HabitRollups.periodStart(HabitRollups.Tier.WEEK, today - 7 * 51)
+                          : today - 6;
+            if(day < shownFrom || day > today) return;
+            changed = day;
+        }
 
-        Set<String> habitNames = new LinkedHashSet<>();
-        for(Map<String,Integer> m : allData.values()) habitNames.addAll(m.keySet());
+        Integer day = changed;
+        SwingUtilities.invokeLater(() -> {
+            if(!isDisplayable()) return;
+            if(updateInPlace(day)) return;
+            getContentPane().removeAll(); // a new habit column or a new week: lay the view out again
+            showView();
+        });
+    }
+
+    // Rewrites the changed day's row (every row if day is null), the average row and the
+    // stat cards; false if the columns or shown days moved and the view must be rebuilt
+    private boolean updateInPlace(Integer day) {
+        if(viewType.equalsIgnoreCase("year")) return updateYearInPlace(day);
+        HabitSeries fresh = UserFileHandler.readHabitSeries(userId, 7);
+        boolean sameShape = tableModel != null && Arrays.equals(fresh.habits, week.habits) && Arrays.equals(fresh.days, week.days);
+        week = fresh;
+        if(!sameShape) return false;
+
+        boolean today = viewType.equalsIgnoreCase("today");
+        int first = today ? week.dayCount() - 1 : 0;
+        for(int d=first; d<week.dayCount(); d++){
+            if(day != null && week.days[d] != day) continue;
+            int row = today ? 0 : d;
+            int col = today ? 0 : 1;
+            for(int h=0; h<week.habits.length; h++) tableModel.setValueAt(week.value(h, d), row, h + col);
+        }
+        if(!today) {
+            calculateSevenDayAverages();
+            int avgRow = tableModel.getRowCount() - 1;
+            for(int h=0; h<week.habits.length; h++) {
+                tableModel.setValueAt(String.format("%.1f", habitAverages.getOrDefault(week.habits[h], 0.0)), avgRow, h + 1);
+            }
+            updateStats();
+        }
+        chartPanel.repaint();
+        return true;
+    }
 
-        String[] columns = habitNames.toArray(new String[0]);
+    // Re-reads the rollup of the changed week only
+    private boolean updateYearInPlace(Integer day) {
+        int today = (int) LocalDate.now().toEpochDay();
+        int firstWeek = HabitRollups.periodStart(HabitRollups.Tier.WEEK, today - 7 * 51);
+        String[] habits = HabitRollups.habits(userId).toArray(new String[0]);
+        if(tableModel == null || firstWeek != trendFirstWeek || !Arrays.equals(habits, trendHabits)) return false;
+
+        int weeks = tableModel.getRowCount();
+        int from = day == null ? 0 : (HabitRollups.periodStart(HabitRollups.Tier.WEEK, day) - firstWeek) / 7;
+        int to = day == null ? weeks - 1 : from;
+        for(int h=0; h<habits.length; h++) {
+            Arrays.fill(trendMeans[h], from, to + 1, 0.0);
+            for(HabitRollups.Point p : HabitRollups.points(userId, HabitRollups.Tier.WEEK, habits[h], firstWeek + 7 * from, firstWeek + 7 * to)) {
+                trendMeans[h][(p.start - firstWeek) / 7] = p.mean();
+            }
+            for(int w=from; w<=to; w++) tableModel.setValueAt(String.format("%.1f", trendMeans[h][w]), weeks - 1 - w, h + 1);
+        }
+        chartPanel.repaint();
+        return true;
+    }
+
+    private void showToday() {
+        String[] columns = week.habits.clone();
         DefaultTableModel model = new DefaultTableModel(columns, 0);
 
+        int today = week.dayCount() - 1;
         Object[] row = new Object[columns.length];
-        int i=0;
-        for(String h : habitNames) row[i++] = todayMap.getOrDefault(h, 0);
+        for(int h=0; h<columns.length; h++) row[h] = week.value(h, today);
         model.addRow(row);
 
         JTable table = createModernTable(model);
         JScrollPane scroll = createModernScrollPane(table, 120);
 
         JPanel graphPanel = createGraphPanel(model, "Today's Activity Overview", false);
+        tableModel = model;
+        chartPanel = graphPanel;
 
         JPanel mainPanel = createScrollableMainPanel();
         
@@ -108,39 +205,17 @@ public class HabitViewer extends JFrame {
         // Calculate 7-day averages first
         calculateSevenDayAverages();
         
-        List<String> last7Dates = new ArrayList<>();
-        LocalDate today = LocalDate.now();
-        for(int d=6; d>=0; d--) last7Dates.add(today.minusDays(d).toString());
-
-        Map<String, Map<String,Integer>> allData = UserFileHandler.loadHabitsWithDate(userId);
-
-        Set<String> habitNames = new LinkedHashSet<>();
-        for(Map<String,Integer> m : allData.values()) habitNames.addAll(m.keySet());
-
-        String[] columns = new String[habitNames.size()+1];
+        String[] columns = new String[week.habits.length+1];
         columns[0] = "Date";
-        int c=1;
-        for(String h : habitNames) columns[c++] = h;
+        System.arraycopy(week.habits, 0, columns, 1, week.habits.length);
 
         DefaultTableModel model = new DefaultTableModel(columns,0);
 
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM dd");
-        for(String date : last7Dates){
+        for(int d=0; d<week.dayCount(); d++){
             Object[] row = new Object[columns.length];
-            try {
-                LocalDate ld = LocalDate.parse(date);
-                row[0] = ld.format(formatter);
-            } catch (Exception e) {
-                row[0] = date;
-            }
-            
-            for(int i=1;i<columns.length;i++) row[i]=0;
-            if(allData.containsKey(date)){
-                Map<String,Integer> hm = allData.get(date);
-                for(int i=1;i<columns.length;i++){
-                    if(hm.containsKey(columns[i])) row[i] = hm.get(columns[i]);
-                }
-            }
+            row[0] = LocalDate.ofEpochDay(week.days[d]).format(formatter);
+            for(int h=0; h<week.habits.length; h++) row[h+1] = week.value(h, d);
             model.addRow(row);
         }
 
@@ -159,6 +234,8 @@ public class HabitViewer extends JFrame {
 
         JPanel graphPanel = createGraphPanel(model, "7-Day Average Performance", true);
         JPanel statsPanel = createStatsPanel();
+        tableModel = model;
+        chartPanel = graphPanel;
 
         JPanel mainPanel = createScrollableMainPanel();
         
@@ -184,67 +261,173 @@ public class HabitViewer extends JFrame {
         repaint();
     }
 
-    private void calculateSevenDayAverages() {
-        habitAverages.clear();
-        habitValidDays.clear();
-        
-        List<String> last7Dates = new ArrayList<>();
-        LocalDate today = LocalDate.now();
-        for(int d=6; d>=0; d--) last7Dates.add(today.minusDays(d).toString());
+    // 52 weekly points read from the rollups instead of a year of day lines
+    private void showLastYear() {
+        int today = (int) LocalDate.now().toEpochDay();
+        int firstWeek = HabitRollups.periodStart(HabitRollups.Tier.WEEK, today - 7 * 51);
+        int weeks = (today - firstWeek) / 7 + 1;
+
+        String[] habits = HabitRollups.habits(userId).toArray(new String[0]);
+        double[][] means = new double[habits.length][weeks];
+        for(int h=0; h<habits.length; h++) {
+            for(HabitRollups.Point p : HabitRollups.points(userId, HabitRollups.Tier.WEEK, habits[h], firstWeek, today)) {
+                means[h][(p.start - firstWeek) / 7] = p.mean();
+            }
+        }
 
-        Map<String, Map<String,Integer>> allData = UserFileHandler.loadHabitsWithDate(userId);
-        
-        // Get all unique habit names
-        Set<String> allHabits = new LinkedHashSet<>();
-        for(Map<String,Integer> dayData : allData.values()) {
-            allHabits.addAll(dayData.keySet());
+        String[] columns = new String[habits.length+1];
+        columns[0] = "Week of";
+        System.arraycopy(habits, 0, columns, 1, habits.length);
+        DefaultTableModel model = new DefaultTableModel(columns, 0);
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM dd, yyyy");
+        for(int w=weeks-1; w>=0; w--) {
+            Object[] row = new Object[columns.length];
+            row[0] = LocalDate.ofEpochDay(firstWeek + 7L * w).format(formatter);
+            for(int h=0; h<habits.length; h++) row[h+1] = String.format("%.1f", means[h][w]);
+            model.addRow(row);
         }
-        
-        // Calculate averages for each habit
-        for(String habit : allHabits) {
-            double total = 0.0;
-            int validDays = 0;
-            
-            for(String date : last7Dates) {
-                if(allData.containsKey(date)) {
-                    Map<String,Integer> dayHabits = allData.get(date);
-                    
-                    // Check if this day has ANY habit data
-                    boolean hasDayData = false;
-                    for(Integer value : dayHabits.values()) {
-                        if(value != null && value > 0) {
-                            hasDayData = true;
-                            break;
-                        }
-                    }
-                    
-                    // Only count days that have some habit data
-                    if(hasDayData && dayHabits.containsKey(habit)) {
-                        Integer value = dayHabits.get(habit);
-                        if(value != null) {
-                            total += value;
-                            validDays++;
-                        }
+
+        JTable table = createModernTable(model);
+        JScrollPane scroll = createModernScrollPane(table, 260);
+        JPanel trendPanel = createTrendPanel(habits, means);
+        tableModel = model;
+        chartPanel = trendPanel;
+        trendHabits = habits;
+        trendMeans = means;
+        trendFirstWeek = firstWeek;
+
+        JPanel mainPanel = createScrollableMainPanel();
+        JPanel headerPanel = createHeaderPanel("Yearly Trends", "Weekly averages over the last 12 months",
+            "Last 52 Weeks");
+
+        mainPanel.add(headerPanel);
+        mainPanel.add(Box.createRigidArea(new Dimension(0, 25)));
+        mainPanel.add(createCardPanel(trendPanel, "Weekly Average Trend"));
+        mainPanel.add(Box.createRigidArea(new Dimension(0, 25)));
+        mainPanel.add(createCardPanel(scroll, "Weekly Data Table"));
+        mainPanel.add(Box.createRigidArea(new Dimension(0, 25)));
+        mainPanel.add(createButtonPanel());
+        mainPanel.add(Box.createRigidArea(new Dimension(0, 30)));
+
+        add(createMainScrollPane(mainPanel), BorderLayout.CENTER);
+        revalidate();
+        repaint();
+    }
+
+    // One line per habit across the weeks, oldest week on the left
+    private JPanel createTrendPanel(String[] habits, double[][] means) {
+        return new JPanel() {
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                Graphics2D g2d = (Graphics2D) g;
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+                int width = getWidth() - 60;
+                int height = 280;
+                int x0 = 30;
+                int y0 = 20;
+                g2d.setColor(SURFACE_COLOR);
+                g2d.fillRoundRect(x0, y0, width, height, 16, 16);
+                g2d.setColor(BORDER_COLOR);
+                g2d.drawRoundRect(x0, y0, width, height, 16, 16);
+
+                int chartX = x0 + 40;
+                int chartY = y0 + 30;
+                int chartWidth = width - 80;
+                int chartHeight = height - 90;
+
+                double maxValue = 1.0;
+                for (double[] column : means) {
+                    maxValue = Math.max(maxValue, HabitKernels.max(column, 0, column.length));
+                }
+                if (habits.length == 0) {
+                    g2d.setColor(TEXT_SECONDARY);
+                    g2d.setFont(new Font("Segoe UI", Font.PLAIN, 18));
+                    g2d.drawString("No data available to display", chartX + chartWidth / 2 - 120, chartY + chartHeight / 2);
+                    return;
+                }
+
+                Color[] colors = {
+                    PRIMARY_COLOR, ACCENT_EMERALD, SECONDARY_COLOR, ACCENT_ORANGE,
+                    ACCENT_PINK, ACCENT_TEAL, ACCENT_AMBER, ACCENT_COLOR
+                };
+                g2d.setStroke(new BasicStroke(2f));
+                int weeks = means[0].length;
+                for (int h = 0; h < habits.length; h++) {
+                    g2d.setColor(colors[h % colors.length]);
+                    int prevX = -1, prevY = -1;
+                    for (int w = 0; w < weeks; w++) {
+                        int x = chartX + (weeks == 1 ? 0 : w * chartWidth / (weeks - 1));
+                        int y = chartY + chartHeight - (int) (means[h][w] / maxValue * chartHeight);
+                        if (prevX >= 0) g2d.drawLine(prevX, prevY, x, y);
+                        prevX = x;
+                        prevY = y;
                     }
                 }
+
+                // Legend
+                g2d.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+                int legendX = chartX;
+                for (int h = 0; h < habits.length; h++) {
+                    g2d.setColor(colors[h % colors.length]);
+                    g2d.fillRoundRect(legendX, chartY + chartHeight + 25, 10, 10, 4, 4);
+                    g2d.setColor(TEXT_SECONDARY);
+                    g2d.drawString(habits[h], legendX + 14, chartY + chartHeight + 35);
+                    legendX += 24 + g2d.getFontMetrics().stringWidth(habits[h]);
+                }
             }
-            
-            double average = validDays > 0 ? (total / validDays) : 0.0;
-            habitAverages.put(habit, average);
-            habitValidDays.put(habit, validDays);
+
+            @Override
+            public Dimension getPreferredSize() {
+                return new Dimension(900, 320);
+            }
+        };
+    }
+
+    private void calculateSevenDayAverages() {
+        habitAverages.clear();
+        habitValidDays.clear();
+        
+        // Days that have ANY habit data; only those count towards an average
+        int[] hasDayData = week.activeDays();
+
+        // Calculate averages for each habit on its primitive day column
+        int[] counted = new int[week.dayCount()];
+        for(int h=0; h<week.habits.length; h++) {
+            for(int d=0; d<week.dayCount(); d++) {
+                counted[d] = week.has(h, d) ? hasDayData[d] : 0;
+            }
+            long total = HabitKernels.maskedSum(week.values[h], counted, 0, counted.length);
+            int validDays = (int) HabitKernels.sum(counted, 0, counted.length);
+
+            double average = validDays > 0 ? ((double) total / validDays) : 0.0;
+            habitAverages.put(week.habits[h], average);
+            habitValidDays.put(week.habits[h], validDays);
         }
     }
 
     private JPanel createStatsPanel() {
-        JPanel statsContainer = new JPanel(new GridLayout(1, 3, 20, 0));
+        JPanel statsContainer = new JPanel(new GridLayout(1, 4, 20, 0));
         statsContainer.setBackground(BACKGROUND_COLOR);
         statsContainer.setMaximumSize(new Dimension(Integer.MAX_VALUE, 120));
 
+        statLabels.clear();
+        statsContainer.add(createStatCard("Overall Average", "", "", PRIMARY_COLOR, "🎯"));
+        statsContainer.add(createStatCard("Active Habits", "", "", SUCCESS_COLOR, "📈"));
+        statsContainer.add(createStatCard("Max Consistency", "", "", SECONDARY_COLOR, "🔥"));
+        statsContainer.add(createStatCard("Current Streak", "", "", WARNING_COLOR, "⚡"));
+        updateStats();
+
+        return statsContainer;
+    }
+
+    // Fills the stat cards from habitAverages / habitValidDays and the streak tracker
+    private void updateStats() {
+        double[] averages = HabitKernels.toColumn(habitAverages.values());
+
         // Overall average
-        double overallAvg = habitAverages.values().stream()
-            .filter(v -> v > 0)
-            .mapToDouble(Double::doubleValue)
-            .average().orElse(0.0);
+        double overallAvg = HabitKernels.meanPositive(averages, 0, averages.length);
 
         // Active habits count
         long activeHabits = habitAverages.values().stream()
@@ -256,18 +439,22 @@ public class HabitViewer extends JFrame {
             .mapToInt(Integer::intValue)
             .max().orElse(0);
 
-        JPanel overallCard = createStatCard("Overall Average", String.format("%.1f", overallAvg), 
-            "units/day", PRIMARY_COLOR, "🎯");
-        JPanel activeCard = createStatCard("Active Habits", String.valueOf(activeHabits), 
-            "out of " + habitAverages.size(), SUCCESS_COLOR, "📈");
-        JPanel consistencyCard = createStatCard("Max Consistency", String.valueOf(maxDays), 
-            "days tracked", SECONDARY_COLOR, "🔥");
+        setStat("Overall Average", String.format("%.1f", overallAvg), "units/day");
+        setStat("Active Habits", String.valueOf(activeHabits), "out of " + habitAverages.size());
+        setStat("Max Consistency", String.valueOf(maxDays), "days tracked");
 
-        statsContainer.add(overallCard);
-        statsContainer.add(activeCard);
-        statsContainer.add(consistencyCard);
+        // Running streak, kept up to date on every save
+        StreakTracker.Streak streak = StreakTracker.best(userId);
+        if (streak == null) setStat("Current Streak", "0", "days in a row");
+        else setStat("Current Streak", String.valueOf(streak.current),
+                "days of " + streak.habit + " (best " + streak.longest + ")");
+    }
 
-        return statsContainer;
+    private void setStat(String title, String value, String subtitle) {
+        JLabel[] labels = statLabels.get(title);
+        if (labels == null) return;
+        labels[0].setText(value);
+        labels[1].setText(subtitle);
     }
 
     private JPanel createStatCard(String title, String value, String subtitle, Color accentColor, String icon) {
@@ -331,6 +518,7 @@ public class HabitViewer extends JFrame {
         contentPanel.add(titleLabel);
         contentPanel.add(valueLabel);
         contentPanel.add(subtitleLabel);
+        statLabels.put(title, new JLabel[] { valueLabel, subtitleLabel });
 
         card.add(iconLabel, BorderLayout.WEST);
         card.add(contentPanel, BorderLayout.CENTER);
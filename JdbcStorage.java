@@ -0,0 +1,569 @@
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HabitStorage on an embedded SQL database through plain JDBC, e.g.
+ *
+ *   -Dhabit.storage=sql -Dhabit.storage.url=jdbc:h2:./habitdb
+ *   -Dhabit.storage=sql -Dhabit.storage.url=jdbc:sqlite:habits.db
+ *
+ * with the driver jar on the classpath. Tables are normalized:
+ *
+ *   users(id, password, name, hall, dept, batch, season, mobile, seq)
+ *   habits(id, name)                           habit dictionary
+ *   goals(user_id, habit_id, goal, unit, pos)  units are per user
+ *   entries(user_id, epoch_day, pos, habit_id, amount)   one row per habit per day
+ *
+ * (not day / value: both are reserved words in H2 2.x). entries has a single
+ * index, on all five columns in that order, so a range of days is read from
+ * the index alone and a save updates one index instead of two. Only SQL that
+ * H2 and SQLite both accept is used (no MERGE / upsert, ids assigned here),
+ * except that putDay locks the user's row with FOR UPDATE where the driver
+ * supports it. On first start an empty database is filled from users.txt and
+ * habits/ in batches.
+ */
+public class JdbcStorage implements HabitStorage {
+
+    private static final int BATCH = 1000;
+
+    private final Pool pool;
+    private boolean selectForUpdate; // false for SQLite, which locks the whole file on the first write
+    // Habit dictionary, mirrored from the habits table; guarded by this
+    private final Map<String, Integer> habitIds = new HashMap<>();
+    private final Map<Integer, String> habitNames = new HashMap<>();
+    private int maxHabitId = 0;
+
+    private JdbcStorage(Pool pool) {
+        this.pool = pool;
+    }
+
+    public static JdbcStorage open(String url, int poolSize) {
+        try {
+            JdbcStorage storage = new JdbcStorage(new Pool(url, poolSize));
+            storage.createSchema();
+            Connection c = storage.pool.take();
+            try {
+                storage.loadHabits(c);
+                storage.selectForUpdate = c.getMetaData().supportsSelectForUpdate();
+            } finally {
+                storage.pool.give(c);
+            }
+            if (storage.isEmpty()) storage.importFrom(new TextFileStorage());
+            return storage;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot open SQL storage at " + url, e);
+        }
+    }
+
+    // ----------------- Users -----------------
+
+    @Override
+    public List<UserRecord> readUsers() {
+        List<UserRecord> users = new ArrayList<>();
+        Connection c = pool.take();
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT id, password, name, hall, dept, batch, season, mobile FROM users ORDER BY seq");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                users.add(new UserRecord(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                                         rs.getString(5), rs.getString(6), rs.getString(7), rs.getString(8)));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            pool.give(c);
+        }
+        return users;
+    }
+
+    @Override
+    public void addUser(UserRecord r) throws IOException {
+        Connection c = pool.take();
+        try (PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO users (id, password, name, hall, dept, batch, season, mobile, seq) "
+              + "SELECT ?, ?, ?, ?, ?, ?, ?, ?, COALESCE(MAX(seq), 0) + 1 FROM users")) {
+            bindUser(ps, r);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        } finally {
+            pool.give(c);
+        }
+    }
+
+    @Override
+    public boolean updateUser(UserRecord r) throws IOException {
+        Connection c = pool.take();
+        try (PreparedStatement ps = c.prepareStatement(
+                "UPDATE users SET password = ?, name = ?, hall = ?, dept = ?, batch = ?, season = ?, mobile = ? WHERE id = ?")) {
+            ps.setString(1, r.password);
+            ps.setString(2, r.name);
+            ps.setString(3, r.hall);
+            ps.setString(4, r.dept);
+            ps.setString(5, r.batch);
+            ps.setString(6, r.season);
+            ps.setString(7, r.mobile);
+            ps.setString(8, r.id);
+            return ps.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw new IOException(e);
+        } finally {
+            pool.give(c);
+        }
+    }
+
+    private static void bindUser(PreparedStatement ps, UserRecord r) throws SQLException {
+        ps.setString(1, r.id);
+        ps.setString(2, r.password);
+        ps.setString(3, r.name);
+        ps.setString(4, r.hall);
+        ps.setString(5, r.dept);
+        ps.setString(6, r.batch);
+        ps.setString(7, r.season);
+        ps.setString(8, r.mobile);
+    }
+
+    // ----------------- Habit days -----------------
+
+    @Override
+    public SortedMap<Integer, String> readDays(String userId, int from, int to) {
+        Connection c = pool.take();
+        try {
+            return readDays(c, userId, from, to);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new TreeMap<>();
+        } finally {
+            pool.give(c);
+        }
+    }
+
+    private SortedMap<Integer, String> readDays(Connection c, String userId, int from, int to) throws SQLException {
+        SortedMap<Integer, String> days = new TreeMap<>();
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT epoch_day, habit_id, amount FROM entries WHERE user_id = ? AND epoch_day BETWEEN ? AND ? "
+              + "ORDER BY epoch_day, pos")) {
+            ps.setString(1, userId);
+            ps.setInt(2, from);
+            ps.setInt(3, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                StringBuilder kvs = new StringBuilder();
+                int current = 0;
+                boolean any = false;
+                while (rs.next()) {
+                    int day = rs.getInt(1);
+                    if (any && day != current) {
+                        days.put(current, kvs.toString());
+                        kvs.setLength(0);
+                    }
+                    current = day;
+                    any = true;
+                    if (kvs.length() > 0) kvs.append(',');
+                    kvs.append(habitName(rs.getInt(2))).append(':').append(rs.getInt(3));
+                }
+                if (any) days.put(current, kvs.toString());
+            }
+        }
+        return days;
+    }
+
+    // Old rows read and locked, deleted and replaced, all in one transaction on one connection
+    @Override
+    public String putDay(String userId, int day, String kvs) throws IOException {
+        String previous;
+        Map<String, Integer> pairs = parsePairs(kvs);
+        Map<String, Integer> ids;
+        try {
+            ids = habitIds(pairs.keySet()); // before the transaction, see habitIds
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+        Connection c = pool.take();
+        try {
+            c.setAutoCommit(false);
+            try (PreparedStatement delete = c.prepareStatement("DELETE FROM entries WHERE user_id = ? AND epoch_day = ?");
+                 PreparedStatement insert = c.prepareStatement(
+                     "INSERT INTO entries (user_id, epoch_day, pos, habit_id, amount) VALUES (?, ?, ?, ?, ?)")) {
+                if (selectForUpdate) lockUser(c, userId);
+                previous = readDays(c, userId, day, day).get(day);
+                delete.setString(1, userId);
+                delete.setInt(2, day);
+                delete.executeUpdate();
+                addEntries(insert, userId, day, pairs, ids);
+                insert.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        } finally {
+            pool.give(c);
+        }
+        return previous;
+    }
+
+    // Hold the user's row until the transaction ends, so saves of one user
+    // queue up behind each other. Locking the entry rows instead deadlocks:
+    // they are deleted and inserted again, so two saves take them in different orders.
+    private void lockUser(Connection c, String userId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("SELECT id FROM users WHERE id = ? FOR UPDATE")) {
+            ps.setString(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+            }
+        }
+    }
+
+    // habit -> value of a day line, in line order
+    private static Map<String, Integer> parsePairs(String kvs) {
+        Map<String, Integer> pairs = new LinkedHashMap<>();
+        for (String kv : kvs.split(",")) {
+            int colon = kv.indexOf(':');
+            if (colon <= 0) continue;
+            try { pairs.put(kv.substring(0, colon), Integer.parseInt(kv.substring(colon + 1).trim())); } // later pair wins
+            catch (NumberFormatException e) { /* same as the text reader: skip the pair */ }
+        }
+        return pairs;
+    }
+
+    // Queue one row per habit of a day line; ids holds an id for every habit in pairs
+    private static void addEntries(PreparedStatement insert, String userId, int day,
+                                   Map<String, Integer> pairs, Map<String, Integer> ids) throws SQLException {
+        int pos = 0;
+        for (Map.Entry<String, Integer> pair : pairs.entrySet()) {
+            insert.setString(1, userId);
+            insert.setInt(2, day);
+            insert.setInt(3, pos++);
+            insert.setInt(4, ids.get(pair.getKey()));
+            insert.setInt(5, pair.getValue());
+            insert.addBatch();
+        }
+    }
+
+    // ----------------- Goals -----------------
+
+    @Override
+    public Map<String, String> readGoals(String userId) {
+        Map<String, String> lines = new LinkedHashMap<>();
+        Connection c = pool.take();
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT habit_id, goal, unit FROM goals WHERE user_id = ? ORDER BY pos")) {
+            ps.setString(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String name = habitName(rs.getInt(1));
+                    lines.put(name, name + "," + rs.getInt(2) + "," + rs.getString(3));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            pool.give(c);
+        }
+        return lines;
+    }
+
+    @Override
+    public void writeGoals(String userId, Collection<String> lines) throws IOException {
+        Map<String, Integer> ids;
+        try {
+            ids = habitIds(goalNames(lines));
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+        Connection c = pool.take();
+        try {
+            c.setAutoCommit(false);
+            try (PreparedStatement delete = c.prepareStatement("DELETE FROM goals WHERE user_id = ?");
+                 PreparedStatement insert = c.prepareStatement(GOAL_INSERT)) {
+                delete.setString(1, userId);
+                delete.executeUpdate();
+                addGoals(insert, userId, lines, ids);
+                insert.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        } finally {
+            pool.give(c);
+        }
+    }
+
+    private static final String GOAL_INSERT = "INSERT INTO goals (user_id, habit_id, goal, unit, pos) VALUES (?, ?, ?, ?, ?)";
+
+    // Habit names of "name,goal,unit" lines
+    private static Set<String> goalNames(Collection<String> lines) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String line : lines) names.add(line.split(",")[0]);
+        return names;
+    }
+
+    private static void addGoals(PreparedStatement insert, String userId, Collection<String> lines,
+                                 Map<String, Integer> ids) throws SQLException {
+        int pos = 0;
+        for (String line : lines) {
+            String[] parts = line.split(",");
+            int goal = 0;
+            try { goal = Integer.parseInt(parts[1].trim()); } catch (Exception e) { /* no goal */ }
+            insert.setString(1, userId);
+            insert.setInt(2, ids.get(parts[0]));
+            insert.setInt(3, goal);
+            insert.setString(4, parts.length > 2 ? parts[2].trim() : "hours");
+            insert.setInt(5, pos++);
+            insert.addBatch();
+        }
+    }
+
+    // ----------------- Habit dictionary -----------------
+
+    private synchronized String habitName(int id) {
+        return habitNames.get(id);
+    }
+
+    // Ids of the given habits. A new habit is inserted by its own autocommitted statement and
+    // published to the maps only after that, so no transaction can use an id whose row might
+    // still roll back; callers resolve their names before opening a transaction of their own
+    private Map<String, Integer> habitIds(Collection<String> names) throws SQLException {
+        Map<String, Integer> ids = knownHabitIds(names);
+        if (ids.size() == new HashSet<>(names).size()) return ids;
+        Connection c = pool.take(); // before the lock: readers hold a connection while they wait for it
+        try {
+            for (String name : names) {
+                if (!ids.containsKey(name)) ids.put(name, insertHabit(c, name));
+            }
+        } finally {
+            pool.give(c);
+        }
+        return ids;
+    }
+
+    private synchronized Map<String, Integer> knownHabitIds(Collection<String> names) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (String name : names) {
+            Integer id = habitIds.get(name);
+            if (id != null) ids.put(name, id);
+        }
+        return ids;
+    }
+
+    // Ids are assigned here so no database-specific auto-increment is needed
+    private synchronized int insertHabit(Connection c, String name) throws SQLException {
+        Integer id = habitIds.get(name);
+        if (id != null) return id; // another thread got there first
+        int next = maxHabitId + 1;
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO habits (id, name) VALUES (?, ?)")) {
+            ps.setInt(1, next);
+            ps.setString(2, name);
+            ps.executeUpdate();
+        }
+        habitIds.put(name, next);
+        habitNames.put(next, name);
+        maxHabitId = next;
+        return next;
+    }
+
+    private synchronized void loadHabits(Connection c) throws SQLException {
+        habitIds.clear();
+        habitNames.clear();
+        maxHabitId = 0;
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT id, name FROM habits")) {
+            while (rs.next()) {
+                habitIds.put(rs.getString(2), rs.getInt(1));
+                habitNames.put(rs.getInt(1), rs.getString(2));
+                maxHabitId = Math.max(maxHabitId, rs.getInt(1));
+            }
+        }
+    }
+
+    // ----------------- Schema & migration -----------------
+
+    private void createSchema() throws SQLException {
+        Connection c = pool.take();
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS users ("
+                + "id VARCHAR(64) PRIMARY KEY, password VARCHAR(255), name VARCHAR(255), hall VARCHAR(255), "
+                + "dept VARCHAR(255), batch VARCHAR(64), season VARCHAR(64), mobile VARCHAR(64), seq BIGINT NOT NULL)");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS habits ("
+                + "id INTEGER PRIMARY KEY, name VARCHAR(255) NOT NULL UNIQUE)");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS goals ("
+                + "user_id VARCHAR(64) NOT NULL, habit_id INTEGER NOT NULL, goal INTEGER NOT NULL, "
+                + "unit VARCHAR(32) NOT NULL, pos INTEGER NOT NULL, PRIMARY KEY (user_id, habit_id))");
+            moveUnitsToGoals(c);
+            renameOldEntryColumns(c);
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS entries ("
+                + "user_id VARCHAR(64) NOT NULL, epoch_day INTEGER NOT NULL, pos INTEGER NOT NULL, "
+                + "habit_id INTEGER NOT NULL, amount INTEGER NOT NULL)");
+            // The only index: readDays finds, orders and reads everything from it. A day's rows are
+            // always replaced together by putDay, which keeps one row per habit and per pos.
+            st.executeUpdate("DROP INDEX IF EXISTS entries_user_day"); // old covering copy of the key prefix
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS entries_by_day ON entries (user_id, epoch_day, pos, habit_id, amount)");
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS users_seq ON users (seq)");
+        } finally {
+            pool.give(c);
+        }
+    }
+
+    // Databases made before the rename (SQLite accepted day / value) keep their rows
+    private static void renameOldEntryColumns(Connection c) throws SQLException {
+        if (!hasColumn(c, "entries", "day")) return;
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("ALTER TABLE entries RENAME COLUMN \"day\" TO epoch_day");
+            st.executeUpdate("ALTER TABLE entries RENAME COLUMN \"value\" TO amount");
+        }
+    }
+
+    // Databases that kept one unit per habit name: each goal takes the unit its habit had
+    private static void moveUnitsToGoals(Connection c) throws SQLException {
+        if (!hasColumn(c, "habits", "unit")) return;
+        try (Statement st = c.createStatement()) {
+            if (!hasColumn(c, "goals", "unit")) {
+                st.executeUpdate("ALTER TABLE goals ADD COLUMN unit VARCHAR(32) NOT NULL DEFAULT 'hours'");
+            }
+            st.executeUpdate("UPDATE goals SET unit = (SELECT h.unit FROM habits h WHERE h.id = goals.habit_id)");
+            st.executeUpdate("ALTER TABLE habits DROP COLUMN unit");
+        }
+    }
+
+    private static boolean hasColumn(Connection c, String table, String column) throws SQLException {
+        DatabaseMetaData meta = c.getMetaData();
+        for (String name : new String[] { table, table.toUpperCase() }) {
+            try (ResultSet rs = meta.getColumns(null, null, name, null)) {
+                while (rs.next()) {
+                    if (rs.getString("COLUMN_NAME").equalsIgnoreCase(column)) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isEmpty() throws SQLException {
+        Connection c = pool.take();
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM users")) {
+            return rs.next() && rs.getLong(1) == 0;
+        } finally {
+            pool.give(c);
+        }
+    }
+
+    // Copy the text files in one transaction, BATCH rows per round trip. Nothing else can use
+    // the storage yet, so new habits go in on the same connection and are published once it commits
+    private void importFrom(TextFileStorage text) throws SQLException {
+        List<UserRecord> users = text.readUsers();
+        if (users.isEmpty()) return;
+        Connection c = pool.take();
+        try {
+            c.setAutoCommit(false);
+            try (PreparedStatement userInsert = c.prepareStatement(
+                     "INSERT INTO users (id, password, name, hall, dept, batch, season, mobile, seq) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                 PreparedStatement entryInsert = c.prepareStatement(
+                     "INSERT INTO entries (user_id, epoch_day, pos, habit_id, amount) VALUES (?, ?, ?, ?, ?)");
+                 PreparedStatement goalInsert = c.prepareStatement(GOAL_INSERT);
+                 PreparedStatement habitInsert = c.prepareStatement("INSERT INTO habits (id, name) VALUES (?, ?)")) {
+                Map<String, Integer> ids = knownHabitIds(habitIds.keySet());
+                int nextId = maxHabitId;
+                Set<String> seen = new HashSet<>();
+                int pending = 0;
+                for (UserRecord r : users) {
+                    if (!seen.add(r.id)) continue; // first line wins, as in the text lookups
+                    bindUser(userInsert, r);
+                    userInsert.setLong(9, seen.size());
+                    userInsert.addBatch();
+                    Map<Integer, Map<String, Integer>> days = new TreeMap<>();
+                    for (Map.Entry<Integer, String> day : text.readDays(r.id, Integer.MIN_VALUE, Integer.MAX_VALUE).entrySet()) {
+                        days.put(day.getKey(), parsePairs(day.getValue()));
+                    }
+                    Collection<String> goals = text.readGoals(r.id).values();
+                    Set<String> names = goalNames(goals);
+                    for (Map<String, Integer> pairs : days.values()) names.addAll(pairs.keySet());
+                    boolean newHabits = false;
+                    for (String name : names) {
+                        if (ids.containsKey(name)) continue;
+                        ids.put(name, ++nextId);
+                        habitInsert.setInt(1, nextId);
+                        habitInsert.setString(2, name);
+                        habitInsert.addBatch();
+                        newHabits = true;
+                    }
+                    if (newHabits) habitInsert.executeBatch(); // ahead of the rows that use them
+                    for (Map.Entry<Integer, Map<String, Integer>> day : days.entrySet()) {
+                        addEntries(entryInsert, r.id, day.getKey(), day.getValue(), ids);
+                        pending++;
+                    }
+                    addGoals(goalInsert, r.id, goals, ids);
+                    if (++pending >= BATCH) {
+                        userInsert.executeBatch();
+                        entryInsert.executeBatch();
+                        goalInsert.executeBatch();
+                        pending = 0;
+                    }
+                }
+                userInsert.executeBatch();
+                entryInsert.executeBatch();
+                goalInsert.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+            loadHabits(c);
+        } finally {
+            pool.give(c);
+        }
+    }
+
+    // ----------------- Connection pool -----------------
+
+    // Fixed set of connections opened up front; a closed one is replaced on return
+    private static class Pool {
+        final String url;
+        final BlockingQueue<Connection> idle;
+
+        Pool(String url, int size) throws SQLException {
+            this.url = url;
+            this.idle = new ArrayBlockingQueue<>(size);
+            for (int i = 0; i < size; i++) idle.add(open());
+        }
+
+        Connection open() throws SQLException {
+            return DriverManager.getConnection(url);
+        }
+
+        Connection take() {
+            try {
+                Connection c = idle.poll(30, TimeUnit.SECONDS);
+                if (c == null) throw new IllegalStateException("No free database connection after 30s");
+                return c;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void give(Connection c) {
+            try {
+                if (c.isClosed()) c = open();
+            } catch (SQLException e) {
+                e.printStackTrace(); // the pool shrinks by one rather than handing out a dead connection
+                return;
+            }
+            idle.offer(c);
+        }
+    }
+}
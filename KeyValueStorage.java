@@ -0,0 +1,156 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * HabitStorage on an LsmStore. Keys are laid out so that what is read
+ * together sorts together:
+ *
+ *   u\0<id>                      user line (UserRecord.toLine)
+ *   d\0<id>\0<day as 8 hex>      "Habit:val,..." for one day
+ *   g\0<id>                      goal lines joined by '\n'
+ *   m\0imported                  set once the text files were imported
+ *
+ * The day is stored with its sign bit flipped so hex order is numeric order;
+ * a user's days are one contiguous range, and a point lookup reads one block.
+ * The first open imports users.txt and habits/ and sets the marker, so later
+ * opens only look up one key.
+ */
+public class KeyValueStorage implements HabitStorage {
+
+    private final LsmStore store;
+
+    private KeyValueStorage(LsmStore store) {
+        this.store = store;
+    }
+
+    public static KeyValueStorage open(File dir) {
+        try {
+            KeyValueStorage storage = new KeyValueStorage(new LsmStore(dir));
+            if (storage.store.get(IMPORTED) == null) storage.importFrom(new TextFileStorage());
+            return storage;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open key-value store in " + dir, e);
+        }
+    }
+
+    // ----------------- Users -----------------
+
+    @Override
+    public List<UserRecord> readUsers() {
+        List<UserRecord> users = new ArrayList<>();
+        for (String line : store.scan("u\0", "u\1").values()) users.add(UserRecord.parse(line));
+        return users;
+    }
+
+    @Override
+    public void addUser(UserRecord record) throws IOException {
+        store.put(userKey(record.id), record.toLine());
+    }
+
+    @Override
+    public boolean updateUser(UserRecord record) throws IOException {
+        if (store.get(userKey(record.id)) == null) return false;
+        store.put(userKey(record.id), record.toLine());
+        return true;
+    }
+
+    // ----------------- Habit days -----------------
+
+    @Override
+    public SortedMap<Integer, String> readDays(String userId, int from, int to) {
+        SortedMap<Integer, String> days = new TreeMap<>();
+        String prefix = "d\0" + userId + "\0";
+        for (Map.Entry<String, String> e : store.scan(prefix + hex(from), prefix + hex(to) + "\0").entrySet()) {
+            days.put(dayOf(e.getKey()), e.getValue());
+        }
+        return days;
+    }
+
+    @Override
+    public String putDay(String userId, int day, String kvs) throws IOException {
+        String key = dayKey(userId, day);
+        String previous = store.get(key);
+        store.put(key, kvs);
+        return previous;
+    }
+
+    // ----------------- Goals -----------------
+
+    @Override
+    public Map<String, String> readGoals(String userId) {
+        Map<String, String> lines = new LinkedHashMap<>();
+        String stored = store.get(goalKey(userId));
+        if (stored == null) return lines;
+        for (String line : stored.split("\n")) {
+            int comma = line.indexOf(',');
+            if (comma > 0) lines.put(line.substring(0, comma), line);
+        }
+        return lines;
+    }
+
+    @Override
+    public void writeGoals(String userId, Collection<String> lines) throws IOException {
+        store.put(goalKey(userId), String.join("\n", lines));
+    }
+
+    // Waits for segments still being written in the background
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+
+    // ----------------- Keys -----------------
+
+    private static final String IMPORTED = "m\0imported";
+
+    private static String userKey(String id) {
+        return "u\0" + id;
+    }
+
+    private static String goalKey(String id) {
+        return "g\0" + id;
+    }
+
+    private static String dayKey(String id, int day) {
+        return "d\0" + id + "\0" + hex(day);
+    }
+
+    private static String hex(int day) {
+        String h = Integer.toHexString(day ^ Integer.MIN_VALUE);
+        return "00000000".substring(h.length()) + h;
+    }
+
+    private static int dayOf(String key) {
+        return Integer.parseUnsignedInt(key.substring(key.length() - 8), 16) ^ Integer.MIN_VALUE;
+    }
+
+    // ----------------- Import -----------------
+
+    // One-time copy of the text files, written in batches; the marker goes in with the last one
+    private void importFrom(TextFileStorage text) throws IOException {
+        if (!store.scan("u\0", "u\1").isEmpty()) { // imported before the marker existed
+            store.put(IMPORTED, "1");
+            store.flush();
+            return;
+        }
+        List<UserRecord> users = text.readUsers();
+        Map<String, String> batch = new LinkedHashMap<>();
+        for (UserRecord r : users) {
+            batch.putIfAbsent(userKey(r.id), r.toLine()); // first line wins, as in the text lookups
+            for (Map.Entry<Integer, String> day : text.readDays(r.id, Integer.MIN_VALUE, Integer.MAX_VALUE).entrySet()) {
+                batch.put(dayKey(r.id, day.getKey()), day.getValue());
+            }
+            Map<String, String> goals = text.readGoals(r.id);
+            if (!goals.isEmpty()) batch.put(goalKey(r.id), String.join("\n", goals.values()));
+            if (batch.size() >= 10_000) {
+                store.putAll(batch);
+                batch.clear();
+            }
+        }
+        batch.put(IMPORTED, "1");
+        store.putAll(batch);
+        store.flush();
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.*;
+
+/**
+ * Keeps the top ranked users per habit (and overall) in small bounded heaps.
+ * The heaps are built from WeeklyAverages and afterwards only the user whose
+ * habits were saved is recomputed, so a ranking query never has to walk the
+ * whole user base again (until WeeklyAverages moves to a new day).
+ */
+public class Leaderboard {
+
+    public static final String OVERALL = "Overall";
+    public static final int TOP_K = 10;
+
+    // category -> (userId -> score), only users with a positive score are kept
+    private static final Map<String, Map<String, Double>> scores = new HashMap<>();
+    // category -> min-heap holding the best TOP_K users, weakest on top
+    private static final Map<String, PriorityQueue<Entry>> topHeaps = new HashMap<>();
+    // WeeklyAverages version the scores were built from
+    private static long loaded = -1;
+
+    public static class Entry {
+        public final String userId;
+        public final double score;
+
+        Entry(String userId, double score) {
+            this.userId = userId;
+            this.score = score;
+        }
+    }
+
+    // Weakest first; on equal score the larger id is considered weaker so ordering is stable
+    private static final Comparator<Entry> WEAKEST_FIRST = (a, b) -> {
+        int c = Double.compare(a.score, b.score);
+        return c != 0 ? c : b.userId.compareTo(a.userId);
+    };
+
+    // ----------------- Queries -----------------
+
+    // Best users for a category, highest score first
+    public static synchronized List<Entry> top(String category) {
+        ensureLoaded();
+        PriorityQueue<Entry> heap = topHeaps.get(category);
+        if (heap == null) return new ArrayList<>();
+        List<Entry> result = new ArrayList<>(heap);
+        result.sort(WEAKEST_FIRST.reversed());
+        return result;
+    }
+
+    // "Overall" first, then every habit that has at least one ranked user
+    public static synchronized List<String> categories() {
+        ensureLoaded();
+        List<String> habits = new ArrayList<>(topHeaps.keySet());
+        habits.remove(OVERALL);
+        Collections.sort(habits);
+        habits.add(0, OVERALL);
+        return habits;
+    }
+
+    // ----------------- Updates -----------------
+
+    // Called after a user's habit file was written; only that user is recomputed
+    public static synchronized void onHabitSaved(String userId, Map<String, Double> weeklyAverages) {
+        if (!WeeklyAverages.isCurrent(loaded)) return; // first query will pick the change up anyway
+        updateUser(userId, weeklyAverages);
+    }
+
+    private static void ensureLoaded() {
+        if (WeeklyAverages.isCurrent(loaded)) return;
+        scores.clear();
+        topHeaps.clear();
+        Map<String, Map<String, Double>> weekly = new HashMap<>();
+        loaded = WeeklyAverages.load(weekly);
+        for (Map.Entry<String, Map<String, Double>> user : weekly.entrySet()) {
+            updateUser(user.getKey(), user.getValue());
+        }
+    }
+
+    private static void updateUser(String userId, Map<String, Double> averages) {
+        // Habits the user no longer has data for drop out of their rankings
+        for (String category : new ArrayList<>(scores.keySet())) {
+            if (!category.equals(OVERALL) && !averages.containsKey(category)) {
+                updateScore(category, userId, 0.0);
+            }
+        }
+
+        double total = 0.0;
+        int count = 0;
+        for (Map.Entry<String, Double> e : averages.entrySet()) {
+            updateScore(e.getKey(), userId, e.getValue());
+            if (e.getValue() > 0) {
+                total += e.getValue();
+                count++;
+            }
+        }
+        updateScore(OVERALL, userId, count > 0 ? total / count : 0.0);
+    }
+
+    private static void updateScore(String category, String userId, double score) {
+        Map<String, Double> categoryScores = scores.computeIfAbsent(category, k -> new HashMap<>());
+        PriorityQueue<Entry> heap = topHeaps.computeIfAbsent(category, k -> new PriorityQueue<>(TOP_K + 1, WEAKEST_FIRST));
+
+        Double previous = score > 0 ? categoryScores.put(userId, score) : categoryScores.remove(userId);
+
+        boolean wasRanked = heap.removeIf(e -> e.userId.equals(userId));
+        if (score > 0) {
+            heap.offer(new Entry(userId, score));
+            if (heap.size() > TOP_K) heap.poll();
+        }
+
+        // A ranked user lost score while others wait outside the heap, so one of them may now
+        // belong in it: refill from the score table. This is the only O(users) path.
+        boolean dropped = wasRanked && (previous == null || score < previous);
+        if (dropped && categoryScores.size() > heap.size()) {
+            heap.clear();
+            for (Map.Entry<String, Double> e : categoryScores.entrySet()) {
+                heap.offer(new Entry(e.getKey(), e.getValue()));
+                if (heap.size() > TOP_K) heap.poll();
+            }
+        }
+
+        if (categoryScores.isEmpty()) {
+            scores.remove(category);
+            topHeaps.remove(category);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Login throughput when many attempts arrive at once. Hashes a set of
+ * passwords in memory (no files touched), then fires bursts of concurrent
+ * checks through LoginVerifier and reports logins per second, latency and
+ * how many were turned away by the bounded queue:
+ *
+ *   java LoginBenchmark [attempts per burst] [bursts]
+ */
+public class LoginBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int burst = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int bursts = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        String[] stored = new String[8];
+        for (int i = 0; i < stored.length; i++) stored[i] = PasswordHasher.hash("warm up" + i); // JIT first
+        long start = System.nanoTime();
+        for (int i = 0; i < stored.length; i++) stored[i] = PasswordHasher.hash("password" + i);
+        double hashMillis = (System.nanoTime() - start) / 1e6 / stored.length;
+        System.out.printf("one hash: %.1f ms, verifier threads: %d%n", hashMillis, LoginVerifier.threads());
+
+        // One at a time, as the old code did on the EDT
+        start = System.nanoTime();
+        for (int i = 0; i < stored.length; i++) PasswordHasher.verify("password" + i, stored[i]);
+        System.out.printf("sequential: %.1f logins/s%n", stored.length * 1e9 / (System.nanoTime() - start));
+
+        for (int b = 0; b < bursts; b++) {
+            List<CompletableFuture<Long>> attempts = new ArrayList<>();
+            long burstStart = System.nanoTime();
+            for (int i = 0; i < burst; i++) {
+                int user = i % stored.length;
+                String pass = i % 4 == 3 ? "wrong" : "password" + user; // a few bad passwords in the mix
+                long submitted = System.nanoTime();
+                attempts.add(LoginVerifier.run(() -> {
+                    PasswordHasher.verify(pass, stored[user]);
+                    return System.nanoTime() - submitted;
+                }));
+            }
+            List<Long> latencies = new ArrayList<>();
+            int rejected = 0;
+            for (CompletableFuture<Long> a : attempts) {
+                try {
+                    latencies.add(a.get());
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof RejectedExecutionException)) throw e;
+                    rejected++;
+                }
+            }
+            long burstNanos = System.nanoTime() - burstStart;
+            Collections.sort(latencies);
+            System.out.printf("burst %d: %d attempts, %.1f logins/s, p50 %.0f ms, p99 %.0f ms, rejected %d%n",
+                b + 1, burst, latencies.size() * 1e9 / burstNanos,
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6, rejected);
+        }
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) return 0;
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(p * sorted.size()) - 1));
+    }
+}
@@ -430,9 +430,14 @@ public class LoginFrame extends JFrame {
         loginBtn.setText("Signing in...");
         loginBtn.setEnabled(false);
 
-        Timer timer = new Timer(500, e -> {
-            String userName = UserFileHandler.validateLogin(id, pass);
-            if (userName != null) {
+        // The hash check runs on LoginVerifier's threads; only the outcome comes back to the EDT
+        LoginVerifier.submit(id, pass).whenComplete((userName, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                showErrorMessage(error instanceof java.util.concurrent.RejectedExecutionException
+                    ? "Too many sign-ins at once, please try again" : "Sign-in failed, please try again");
+                loginBtn.setText("Sign In");
+                loginBtn.setEnabled(true);
+            } else if (userName != null) {
                 showSuccessMessage("Login successful!");
                 Timer successTimer = new Timer(800, _ -> {
                     new DashboardFrame(id, userName).setVisible(true);
@@ -452,9 +457,7 @@ public class LoginFrame extends JFrame {
                     repaint();
                 }
             }
-        });
-        timer.setRepeats(false);
-        timer.start();
+        }));
     }
 
     private void showErrorMessage(String message) {
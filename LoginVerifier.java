@@ -0,0 +1,43 @@
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Runs password checks on a few worker threads instead of the EDT. The pool
+ * is as wide as the machine (at most 4) and only a short queue may wait
+ * behind it; past that a login is turned away at once rather than piling up
+ * hashing work, so a burst of attempts can't starve the rest of the app.
+ */
+public class LoginVerifier {
+
+    private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int QUEUE = 32;
+
+    private static final ThreadPoolExecutor pool = new ThreadPoolExecutor(
+        THREADS, THREADS, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE), new ThreadFactory() {
+            private int next = 1;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "login-verify-" + next++);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+    // The user's name, or null for a wrong id or password; fails with RejectedExecutionException when busy
+    public static CompletableFuture<String> submit(String id, String pass) {
+        return run(() -> UserFileHandler.validateLogin(id, pass));
+    }
+
+    static <T> CompletableFuture<T> run(Supplier<T> check) {
+        try {
+            return CompletableFuture.supplyAsync(check, pool);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    static int threads() {
+        return THREADS;
+    }
+}
@@ -0,0 +1,630 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A small log-structured key-value store for String keys and values, kept in
+ * one directory:
+ *
+ *   wal-N.log      writes to memtable N, fsync'd before put returns
+ *   seg-N.dat      immutable sorted segment flushed from memtable N
+ *   seg-L-H.dat    segments L..H merged into one
+ *
+ * Writes go to the log and an in-memory sorted memtable. A full memtable is
+ * frozen and a background thread writes it out as a segment, so put never
+ * waits for segment I/O (unless several frozen memtables are queued). Reads
+ * look at the memtable, the frozen ones, then the segments newest first,
+ * using each segment's sparse index to read a single block.
+ *
+ * Compaction is size-tiered: when TIER_WIDTH neighbouring segments are of
+ * similar size they are merged into one, so each record is rewritten about
+ * once per tier instead of on every merge. Deletes are dropped only when the
+ * oldest segment takes part. A merged segment is named after the range it
+ * covers; segments left behind by a crash before they were deleted are
+ * recognised by that range on open.
+ */
+public class LsmStore {
+
+    private static final long FLUSH_BYTES = 4L << 20;  // memtable size that triggers a flush
+    private static final int MAX_FROZEN = 2;           // frozen memtables queued before put waits
+    private static final int TIER_WIDTH = 4;           // neighbouring similar segments merged at once
+    private static final int TIER_RATIO = 2;           // "similar": largest at most this times the smallest
+    private static final int MAX_SEGMENTS = 16;        // past this the cheapest neighbours are merged anyway
+    private static final int INDEX_EVERY = 32;         // records per index entry (= per block)
+
+    private static final byte PUT = 1, DELETE = 0;
+
+    private final File dir;
+    private TreeMap<String, String> memtable = new TreeMap<>(); // null value = deleted
+    private long memBytes = 0;
+    private int memSeq;                                          // segment number the memtable will become
+    private final List<Frozen> frozen = new ArrayList<>();       // oldest first, waiting for the flusher
+    private List<Segment> segments = new ArrayList<>();          // oldest first; replaced, never changed in place
+    private FileOutputStream walFile;
+    private DataOutputStream wal;
+    private int nextSeq = 1;
+    private IOException backgroundError = null;
+
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "lsm-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static class Frozen {
+        final int seq;
+        final TreeMap<String, String> entries;
+
+        Frozen(int seq, TreeMap<String, String> entries) {
+            this.seq = seq;
+            this.entries = entries;
+        }
+    }
+
+    public LsmStore(File dir) throws IOException {
+        this.dir = dir;
+        dir.mkdirs();
+        File[] files = dir.listFiles((d, name) -> name.startsWith("seg-") && name.endsWith(".dat"));
+        List<Segment> found = new ArrayList<>();
+        if (files != null) {
+            for (File f : files) found.add(new Segment(f));
+        }
+        found.sort(Comparator.comparingInt((Segment s) -> s.hi).thenComparingInt(s -> s.lo));
+        for (Segment s : found) {
+            // Inputs of a merge that finished writing but crashed before deleting them:
+            // ranges inside the merged one, which sorts before them when the newest ends match
+            Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (last != null && s.hi == last.hi && s.lo >= last.lo) {
+                s.delete();
+                continue;
+            }
+            while (!segments.isEmpty() && s.lo <= segments.get(segments.size() - 1).hi) {
+                segments.get(segments.size() - 1).delete();
+                segments.remove(segments.size() - 1);
+            }
+            segments.add(s);
+            nextSeq = Math.max(nextSeq, s.hi + 1);
+        }
+        recoverWals();
+        memSeq = nextSeq++;
+        openWal();
+    }
+
+    // ----------------- Reads -----------------
+
+    public synchronized String get(String key) {
+        if (memtable.containsKey(key)) return memtable.get(key);
+        for (int i = frozen.size() - 1; i >= 0; i--) {
+            TreeMap<String, String> entries = frozen.get(i).entries;
+            if (entries.containsKey(key)) return entries.get(key);
+        }
+        try {
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                Segment s = segments.get(i);
+                if (s.mayContain(key)) {
+                    Optional<String> hit = s.get(key);
+                    if (hit != null) return hit.orElse(null);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
+    }
+
+    // Live entries with from <= key < to, sorted by key
+    public synchronized SortedMap<String, String> scan(String from, String to) {
+        TreeMap<String, String> merged = new TreeMap<>();
+        try {
+            for (Segment s : segments) s.scan(from, to, merged); // newer segments overwrite older ones
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (Frozen f : frozen) merged.putAll(f.entries.subMap(from, true, to, false));
+        merged.putAll(memtable.subMap(from, true, to, false));
+        merged.values().removeIf(Objects::isNull);
+        return merged;
+    }
+
+    // ----------------- Writes -----------------
+
+    // value null deletes the key; on return the write is on disk
+    public synchronized void put(String key, String value) throws IOException {
+        checkBackground();
+        append(key, value);
+        syncWal();
+        if (memBytes >= FLUSH_BYTES) freeze();
+    }
+
+    // Several writes that reach the log with one fsync
+    public synchronized void putAll(Map<String, String> entries) throws IOException {
+        checkBackground();
+        for (Map.Entry<String, String> e : entries.entrySet()) append(e.getKey(), e.getValue());
+        syncWal();
+        if (memBytes >= FLUSH_BYTES) freeze();
+    }
+
+    // Write everything in memory out as segments and wait until they are on disk
+    public void flush() throws IOException {
+        synchronized (this) {
+            checkBackground();
+            if (!memtable.isEmpty()) freeze();
+        }
+        awaitBackground();
+    }
+
+    // Merge every segment into one, dropping overwritten values and deletes
+    public void compact() throws IOException {
+        flush();
+        runInBackground(() -> {
+            List<Segment> all;
+            synchronized (this) {
+                all = new ArrayList<>(segments);
+            }
+            if (all.size() > 1) merge(0, all.size());
+        });
+        awaitBackground();
+    }
+
+    public void close() throws IOException {
+        flush();
+        flusher.shutdown();
+        synchronized (this) {
+            wal.close();
+            for (Segment s : segments) s.close();
+        }
+    }
+
+    private void append(String key, String value) throws IOException {
+        wal.writeByte(value == null ? DELETE : PUT);
+        writeString(wal, key);
+        if (value != null) writeString(wal, value);
+        memtable.put(key, value);
+        memBytes += 2L * key.length() + (value == null ? 0 : 2L * value.length()) + 48;
+    }
+
+    private void syncWal() throws IOException {
+        wal.flush();
+        walFile.getFD().sync();
+    }
+
+    // Hand the memtable to the flusher and start a new one with its own log
+    private void freeze() throws IOException {
+        while (frozen.size() >= MAX_FROZEN && backgroundError == null) {
+            try {
+                wait(); // the flusher is behind; let it catch up rather than pile up memory
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a flush");
+            }
+        }
+        checkBackground();
+        Frozen f = new Frozen(memSeq, memtable);
+        frozen.add(f);
+        wal.close();
+        memtable = new TreeMap<>();
+        memBytes = 0;
+        memSeq = nextSeq++;
+        openWal();
+        runInBackground(() -> flushFrozen(f));
+    }
+
+    // ----------------- Background work -----------------
+
+    private void runInBackground(IoTask task) {
+        flusher.execute(() -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                synchronized (this) {
+                    if (backgroundError == null) backgroundError = e;
+                    notifyAll();
+                }
+            }
+        });
+    }
+
+    private interface IoTask {
+        void run() throws IOException;
+    }
+
+    // Wait for everything queued so far
+    private void awaitBackground() throws IOException {
+        try {
+            flusher.submit(() -> { }).get();
+        } catch (Exception e) {
+            throw new IOException("Background flush failed", e);
+        }
+        synchronized (this) {
+            checkBackground();
+        }
+    }
+
+    private void checkBackground() throws IOException {
+        if (backgroundError != null) throw new IOException("Background flush failed", backgroundError);
+    }
+
+    private void flushFrozen(Frozen f) throws IOException {
+        File file = segmentFile(f.seq, f.seq);
+        writeSegment(file, f.entries.entrySet().iterator(), false);
+        Segment s = new Segment(file);
+        synchronized (this) {
+            List<Segment> next = new ArrayList<>(segments);
+            next.add(s);
+            segments = next;
+            frozen.remove(f);
+            notifyAll();
+        }
+        walFile(f.seq).delete();
+        compactTiers();
+    }
+
+    // Merge one run of similar neighbours at a time until none is left
+    private void compactTiers() throws IOException {
+        while (true) {
+            List<Segment> current;
+            synchronized (this) {
+                current = segments;
+            }
+            int start = pickTier(current);
+            if (start < 0) return;
+            merge(start, start + TIER_WIDTH);
+        }
+    }
+
+    // First index of TIER_WIDTH neighbours of similar size, or of the cheapest TIER_WIDTH
+    // neighbours when there are too many segments; -1 if nothing needs merging
+    private static int pickTier(List<Segment> segs) {
+        if (segs.size() < TIER_WIDTH) return -1;
+        int cheapest = -1;
+        long cheapestBytes = Long.MAX_VALUE;
+        for (int i = 0; i + TIER_WIDTH <= segs.size(); i++) {
+            long min = Long.MAX_VALUE, max = 0, total = 0;
+            for (int j = i; j < i + TIER_WIDTH; j++) {
+                long size = segs.get(j).file.length();
+                min = Math.min(min, size);
+                max = Math.max(max, size);
+                total += size;
+            }
+            if (max <= TIER_RATIO * Math.max(min, 1)) return i;
+            if (total < cheapestBytes) {
+                cheapestBytes = total;
+                cheapest = i;
+            }
+        }
+        return segs.size() > MAX_SEGMENTS ? cheapest : -1;
+    }
+
+    // Merge segments[from, to) into one; runs on the flusher, so nothing else changes that range
+    private void merge(int from, int to) throws IOException {
+        List<Segment> inputs;
+        synchronized (this) {
+            inputs = new ArrayList<>(segments.subList(from, to));
+        }
+        boolean dropDeletes = from == 0; // nothing older left for a delete to hide
+        List<SegmentReader> readers = new ArrayList<>();
+        File f = segmentFile(inputs.get(0).lo, inputs.get(inputs.size() - 1).hi);
+        try {
+            PriorityQueue<SegmentReader> heap = new PriorityQueue<>((a, b) -> {
+                int c = a.key.compareTo(b.key);
+                return c != 0 ? c : Integer.compare(b.seq, a.seq); // newest first on ties
+            });
+            for (Segment s : inputs) {
+                SegmentReader r = new SegmentReader(s);
+                readers.add(r);
+                if (r.next()) heap.add(r);
+            }
+            Iterator<Map.Entry<String, String>> merged = new Iterator<Map.Entry<String, String>>() {
+                Map.Entry<String, String> next = advance();
+
+                Map.Entry<String, String> advance() {
+                    try {
+                        if (heap.isEmpty()) return null;
+                        SegmentReader top = heap.poll();
+                        Map.Entry<String, String> e = new AbstractMap.SimpleEntry<>(top.key, top.value);
+                        if (top.next()) heap.add(top);
+                        while (!heap.isEmpty() && heap.peek().key.equals(e.getKey())) { // older copies
+                            SegmentReader older = heap.poll();
+                            if (older.next()) heap.add(older);
+                        }
+                        return e;
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+
+                public boolean hasNext() { return next != null; }
+
+                public Map.Entry<String, String> next() {
+                    Map.Entry<String, String> e = next;
+                    next = advance();
+                    return e;
+                }
+            };
+            writeSegment(f, merged, dropDeletes);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (SegmentReader r : readers) r.close();
+        }
+
+        Segment result = new Segment(f);
+        synchronized (this) {
+            List<Segment> next = new ArrayList<>(segments);
+            int at = next.indexOf(inputs.get(0));
+            next.subList(at, at + inputs.size()).clear();
+            next.add(at, result);
+            segments = next;
+            for (Segment s : inputs) s.delete(); // no reader holds them: reads take this lock
+        }
+    }
+
+    // ----------------- Files -----------------
+
+    private File walFile(int seq) {
+        return new File(dir, "wal-" + seq + ".log");
+    }
+
+    private File segmentFile(int lo, int hi) {
+        return new File(dir, lo == hi ? "seg-" + hi + ".dat" : "seg-" + lo + "-" + hi + ".dat");
+    }
+
+    // {lo, hi} from seg-N.dat or seg-L-H.dat
+    private static int[] rangeOf(File f) {
+        String name = f.getName();
+        String[] parts = name.substring(4, name.length() - 4).split("-");
+        int lo = Integer.parseInt(parts[0]);
+        return new int[] { lo, parts.length > 1 ? Integer.parseInt(parts[1]) : lo };
+    }
+
+    private void openWal() throws IOException {
+        walFile = new FileOutputStream(walFile(memSeq), true);
+        wal = new DataOutputStream(new BufferedOutputStream(walFile));
+    }
+
+    // Logs of memtables that never became segments, oldest first (wal.log is from before numbered logs);
+    // their records are written out as one segment and the logs removed
+    private void recoverWals() throws IOException {
+        List<File> logs = new ArrayList<>();
+        File legacy = new File(dir, "wal.log");
+        if (legacy.exists()) logs.add(legacy);
+        File[] numbered = dir.listFiles((d, name) -> name.startsWith("wal-") && name.endsWith(".log"));
+        if (numbered != null) {
+            Arrays.sort(numbered, Comparator.comparingInt(LsmStore::walSeqOf));
+            logs.addAll(Arrays.asList(numbered));
+        }
+        for (File f : logs) {
+            int seq = f == legacy ? 0 : walSeqOf(f);
+            nextSeq = Math.max(nextSeq, seq + 1);
+            if (f != legacy && !segments.isEmpty() && seq <= segments.get(segments.size() - 1).hi) continue; // already flushed
+            replayWal(f);
+        }
+        if (!memtable.isEmpty()) {
+            File f = segmentFile(nextSeq, nextSeq);
+            nextSeq++;
+            writeSegment(f, memtable.entrySet().iterator(), false);
+            segments.add(new Segment(f));
+            memtable = new TreeMap<>();
+            memBytes = 0;
+        }
+        for (File f : logs) f.delete();
+    }
+
+    private static int walSeqOf(File f) {
+        String name = f.getName();
+        return Integer.parseInt(name.substring(4, name.length() - 4));
+    }
+
+    private void replayWal(File f) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            while (true) {
+                int op = in.read();
+                if (op < 0) break;
+                String key, value = null;
+                try {
+                    key = readString(in);
+                    if (op == PUT) value = readString(in);
+                } catch (EOFException e) {
+                    break; // torn last record from a crash: it never completed, drop it
+                }
+                memtable.put(key, value);
+                memBytes += 2L * key.length() + (value == null ? 0 : 2L * value.length()) + 48;
+            }
+        }
+    }
+
+    // Layout: records (key, flag, value?) ... | index (count, key + offset ...) | index offset (long)
+    private static void writeSegment(File f, Iterator<Map.Entry<String, String>> entries, boolean dropDeletes) throws IOException {
+        File tmp = new File(f.getPath() + ".tmp");
+        List<String> indexKeys = new ArrayList<>();
+        List<Long> indexOffsets = new ArrayList<>();
+        try (FileOutputStream file = new FileOutputStream(tmp);
+             CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(file));
+             DataOutputStream out = new DataOutputStream(counter)) {
+            int n = 0;
+            while (entries.hasNext()) {
+                Map.Entry<String, String> e = entries.next();
+                if (e.getValue() == null && dropDeletes) continue;
+                if (n++ % INDEX_EVERY == 0) {
+                    out.flush();
+                    indexKeys.add(e.getKey());
+                    indexOffsets.add(counter.count);
+                }
+                writeString(out, e.getKey());
+                out.writeByte(e.getValue() == null ? DELETE : PUT);
+                if (e.getValue() != null) writeString(out, e.getValue());
+            }
+            out.flush();
+            long indexStart = counter.count;
+            out.writeInt(indexKeys.size());
+            for (int i = 0; i < indexKeys.size(); i++) {
+                writeString(out, indexKeys.get(i));
+                out.writeLong(indexOffsets.get(i));
+            }
+            out.writeLong(indexStart);
+            out.flush();
+            file.getFD().sync(); // on disk before the rename makes it visible and its log is deleted
+        }
+        if (!tmp.renameTo(f)) throw new IOException("Cannot create " + f);
+    }
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) { super(out); }
+
+        @Override public void write(int b) throws IOException { out.write(b); count++; }
+
+        @Override public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); count += len; }
+    }
+
+    // ----------------- Segments -----------------
+
+    // An immutable sorted file; only its sparse index is held in memory
+    private static class Segment {
+        final File file;
+        final int lo, hi; // memtables this segment holds
+        final RandomAccessFile raf;
+        final String[] indexKeys;
+        final long[] indexOffsets;
+        final long dataEnd;
+
+        Segment(File file) throws IOException {
+            this.file = file;
+            int[] range = rangeOf(file);
+            lo = range[0];
+            hi = range[1];
+            this.raf = new RandomAccessFile(file, "r");
+            raf.seek(raf.length() - 8);
+            dataEnd = raf.readLong();
+            byte[] index = new byte[(int) (raf.length() - 8 - dataEnd)];
+            raf.seek(dataEnd);
+            raf.readFully(index);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+            int n = in.readInt();
+            indexKeys = new String[n];
+            indexOffsets = new long[n];
+            for (int i = 0; i < n; i++) {
+                indexKeys[i] = readString(in);
+                indexOffsets[i] = in.readLong();
+            }
+        }
+
+        boolean mayContain(String key) {
+            return indexKeys.length > 0 && key.compareTo(indexKeys[0]) >= 0;
+        }
+
+        // null: not in this segment; empty: deleted here
+        Optional<String> get(String key) throws IOException {
+            int block = blockOf(key);
+            if (block < 0) return null;
+            DataInputStream in = readBlock(block);
+            while (in.available() > 0) {
+                String k = readString(in);
+                boolean present = in.readByte() == PUT;
+                String v = present ? readString(in) : null;
+                int c = k.compareTo(key);
+                if (c == 0) return Optional.ofNullable(v);
+                if (c > 0) return null;
+            }
+            return null;
+        }
+
+        void scan(String from, String to, Map<String, String> into) throws IOException {
+            for (int block = Math.max(0, blockOf(from)); block < indexKeys.length; block++) {
+                if (indexKeys[block].compareTo(to) >= 0) return;
+                DataInputStream in = readBlock(block);
+                while (in.available() > 0) {
+                    String k = readString(in);
+                    boolean present = in.readByte() == PUT;
+                    String v = present ? readString(in) : null;
+                    if (k.compareTo(to) >= 0) return;
+                    if (k.compareTo(from) >= 0) into.put(k, v);
+                }
+            }
+        }
+
+        // Last block whose first key is <= key, -1 if key sorts before the segment
+        private int blockOf(String key) {
+            int lo = 0, hi = indexKeys.length - 1, found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (indexKeys[mid].compareTo(key) <= 0) { found = mid; lo = mid + 1; }
+                else hi = mid - 1;
+            }
+            return found;
+        }
+
+        private DataInputStream readBlock(int block) throws IOException {
+            long start = indexOffsets[block];
+            long end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+            byte[] bytes = new byte[(int) (end - start)];
+            synchronized (raf) {
+                raf.seek(start);
+                raf.readFully(bytes);
+            }
+            return new DataInputStream(new ByteArrayInputStream(bytes));
+        }
+
+        void close() throws IOException {
+            raf.close();
+        }
+
+        void delete() throws IOException {
+            close();
+            file.delete();
+        }
+    }
+
+    // Sequential reader used by compaction; its own stream, so lookups keep using the segment meanwhile
+    private static class SegmentReader {
+        final int seq;
+        final DataInputStream in;
+        final long end;
+        long pos = 0;
+        String key, value;
+
+        SegmentReader(Segment s) throws IOException {
+            seq = s.hi;
+            end = s.dataEnd;
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(s.file), 1 << 16));
+        }
+
+        boolean next() throws IOException {
+            if (pos >= end) return false;
+            int keyLen = in.readInt();
+            byte[] k = new byte[keyLen];
+            in.readFully(k);
+            key = new String(k, StandardCharsets.UTF_8);
+            boolean present = in.readByte() == PUT;
+            pos += 4 + keyLen + 1;
+            value = null;
+            if (present) {
+                int valueLen = in.readInt();
+                byte[] v = new byte[valueLen];
+                in.readFully(v);
+                value = new String(v, StandardCharsets.UTF_8);
+                pos += 4 + valueLen;
+            }
+            return true;
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 public class MainApp {
     public static void main(String[] args) {
+        HabitRollups.startBackgroundRebuild();
+        DataWatcher.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(UserFileHandler::close, "storage-close"));
         java.awt.EventQueue.invokeLater(() -> new LoginFrame().setVisible(true));
     }
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+import java.util.*;
+
+/**
+ * Search-as-you-type over user names. A trie answers "starts with" for every
+ * word of a name ("da" finds "Sourav Das"), and a trigram index answers
+ * "contains" for queries of three or more characters. Both are built from
+ * UserIndex once and then patched by UserIndex whenever a user is written,
+ * so a keystroke never reads users.txt.
+ */
+public class NameIndex {
+
+    private static class TrieNode {
+        final Map<Character, TrieNode> children = new HashMap<>();
+        Set<String> ids; // users with a word ending exactly here
+    }
+
+    private static TrieNode root = null;
+    // trigram -> ids whose normalized name contains it
+    private static final Map<String, Set<String>> trigrams = new HashMap<>();
+    // id -> normalized name currently indexed, to undo it on rename
+    private static final Map<String, String> indexedNames = new HashMap<>();
+
+    // ----------------- Queries -----------------
+
+    // Ids of users matching the query, word-prefix matches first, at most limit results.
+    // Runs under UserIndex's lock: UserIndex calls update() while holding it, so
+    // taking the same monitor keeps both indexes in step without lock-order issues.
+    public static List<String> search(String query, int limit) {
+        synchronized (UserIndex.class) {
+            return find(normalize(query), limit);
+        }
+    }
+
+    private static List<String> find(String q, int limit) {
+        ensureLoaded();
+        List<String> result = new ArrayList<>();
+        if (q.isEmpty() || limit <= 0) return result;
+
+        LinkedHashSet<String> found = new LinkedHashSet<>();
+        TrieNode node = root;
+        for (int i = 0; i < q.length() && node != null; i++) {
+            node = node.children.get(q.charAt(i));
+        }
+        if (node != null) collect(node, found, limit);
+
+        if (found.size() < limit && q.length() >= 3) {
+            for (String id : containing(q)) {
+                found.add(id);
+                if (found.size() >= limit) break;
+            }
+        }
+        result.addAll(found);
+        return result;
+    }
+
+    // ----------------- Updates (called by UserIndex, under its lock) -----------------
+
+    static void update(UserRecord old, UserRecord current) {
+        if (root == null) return; // built lazily from UserIndex on the first search
+        if (old != null) remove(old.id);
+        if (current != null) add(current.id, current.name);
+    }
+
+    static void invalidate() {
+        root = null;
+        trigrams.clear();
+        indexedNames.clear();
+    }
+
+    private static void ensureLoaded() {
+        if (root != null) return;
+        root = new TrieNode();
+        for (UserRecord r : UserIndex.all()) {
+            add(r.id, r.name);
+        }
+    }
+
+    private static void add(String id, String name) {
+        String normalized = normalize(name);
+        if (normalized.isEmpty()) return;
+        indexedNames.put(id, normalized);
+
+        // Every word start becomes a trie entry, so prefixes of later words match too
+        for (int start = 0; start < normalized.length(); start++) {
+            if (start > 0 && normalized.charAt(start - 1) != ' ') continue;
+            TrieNode node = root;
+            for (int i = start; i < normalized.length(); i++) {
+                node = node.children.computeIfAbsent(normalized.charAt(i), c -> new TrieNode());
+            }
+            if (node.ids == null) node.ids = new HashSet<>();
+            node.ids.add(id);
+        }
+
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            trigrams.computeIfAbsent(normalized.substring(i, i + 3), k -> new HashSet<>()).add(id);
+        }
+    }
+
+    private static void remove(String id) {
+        String normalized = indexedNames.remove(id);
+        if (normalized == null) return;
+
+        for (int start = 0; start < normalized.length(); start++) {
+            if (start > 0 && normalized.charAt(start - 1) != ' ') continue;
+            TrieNode node = root;
+            for (int i = start; i < normalized.length() && node != null; i++) {
+                node = node.children.get(normalized.charAt(i));
+            }
+            if (node != null && node.ids != null) node.ids.remove(id);
+        }
+
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            Set<String> ids = trigrams.get(normalized.substring(i, i + 3));
+            if (ids == null) continue;
+            ids.remove(id);
+            if (ids.isEmpty()) trigrams.remove(normalized.substring(i, i + 3));
+        }
+    }
+
+    // Depth-first walk that stops as soon as enough ids were found
+    private static void collect(TrieNode node, Set<String> found, int limit) {
+        if (node.ids != null) {
+            for (String id : node.ids) {
+                found.add(id);
+                if (found.size() >= limit) return;
+            }
+        }
+        for (TrieNode child : node.children.values()) {
+            collect(child, found, limit);
+            if (found.size() >= limit) return;
+        }
+    }
+
+    // Intersect the posting lists of the query's trigrams, smallest first, then verify
+    private static List<String> containing(String q) {
+        List<Set<String>> postings = new ArrayList<>();
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            Set<String> ids = trigrams.get(q.substring(i, i + 3));
+            if (ids == null) return new ArrayList<>();
+            postings.add(ids);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+
+        List<String> result = new ArrayList<>();
+        for (String id : postings.get(0)) {
+            boolean inAll = true;
+            for (int i = 1; i < postings.size() && inAll; i++) {
+                inAll = postings.get(i).contains(id);
+            }
+            if (inAll && indexedNames.get(id).contains(q)) result.add(id);
+        }
+        return result;
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.trim().toLowerCase().replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,84 @@
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Slow salted password hashes for the password column of users.txt:
+ *
+ *   pbkdf2$<iterations>$<salt base64>$<hash base64>
+ *
+ * (no commas, so the line format is unchanged). Rows from before hashing
+ * still hold the plain password; verify() accepts those too and
+ * needsRehash() tells UserFileHandler to replace them after the next good
+ * login. A verify costs tens of milliseconds on purpose, so callers on the
+ * EDT go through LoginVerifier.
+ */
+public class PasswordHasher {
+
+    private static final String PREFIX = "pbkdf2$";
+    private static final int ITERATIONS = 100_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final SecureRandom random = new SecureRandom();
+
+    // Checked against for unknown ids, so a wrong id costs as much as a wrong password
+    private static final String DUMMY = hash("not a password");
+
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + ITERATIONS + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(pbkdf2(password, salt, ITERATIONS));
+    }
+
+    public static boolean verify(String password, String stored) {
+        if (stored == null) {
+            verify(password, DUMMY);
+            return false;
+        }
+        if (!isHashed(stored)) { // a row from before hashing
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) return false;
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, iterations));
+        } catch (IllegalArgumentException e) {
+            return false; // a damaged hash never matches
+        }
+    }
+
+    // Plain rows, and hashes made with fewer iterations than today's
+    public static boolean needsRehash(String stored) {
+        if (!isHashed(stored)) return true;
+        String[] parts = stored.split("\\$");
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < ITERATIONS;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    public static boolean isHashed(String stored) {
+        return stored.startsWith(PREFIX);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is part of every JDK", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -3,8 +3,6 @@ import java.awt.*;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
-import java.util.ArrayList;
-import java.util.List;
 
 public class ProfileFrame extends JFrame {
     private String userId;
@@ -82,25 +80,11 @@ public class ProfileFrame extends JFrame {
     }
 
     private void loadUserData() {
-        try {
-            File file = new File("users.txt");
-            if (!file.exists()) return;
-
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 3 && parts[0].equals(userId)) {
-                    nameField.setText(parts[2]);
-                    mobileField.setText(parts.length > 7 ? parts[7] : "");
-                    deptField.setText(parts.length > 4 ? parts[4] : "");
-                    break;
-                }
-            }
-            reader.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        UserRecord user = UserFileHandler.getUserRecord(userId);
+        if (user == null) return;
+        nameField.setText(user.name);
+        mobileField.setText(user.mobile);
+        deptField.setText(user.dept);
     }
 
     private void loadProfilePicture() {
@@ -181,36 +165,7 @@ public class ProfileFrame extends JFrame {
         }
 
         try {
-            File file = new File("users.txt");
-            List<String> lines = new ArrayList<>();
-            boolean userFound = false;
-
-            if (file.exists()) {
-                BufferedReader reader = new BufferedReader(new FileReader(file));
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    String[] parts = line.split(",");
-                    if (parts.length >= 3 && parts[0].equals(userId)) {
-                        String updatedLine = parts[0] + "," + parts[1] + "," + name + "," + 
-                                           (parts.length > 3 ? parts[3] : "") + "," + dept + "," +
-                                           (parts.length > 5 ? parts[5] : "") + "," + 
-                                           (parts.length > 6 ? parts[6] : "") + "," + mobile;
-                        lines.add(updatedLine);
-                        userFound = true;
-                    } else {
-                        lines.add(line);
-                    }
-                }
-                reader.close();
-            }
-
-            if (userFound) {
-                BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-                for (String line : lines) {
-                    writer.write(line);
-                    writer.newLine();
-                }
-                writer.close();
+            if (UserFileHandler.saveProfile(userId, name, dept, mobile)) {
                 JOptionPane.showMessageDialog(this, "Profile updated successfully!");
             } else {
                 JOptionPane.showMessageDialog(this, "User not found in file!");
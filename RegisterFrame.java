@@ -517,14 +517,26 @@ public class RegisterFrame extends JFrame {
             return;
         }
 
-        // Save user
-        if (UserFileHandler.saveUser(id, pass, name, mobile, hall, dept, batch, "")) {
-            showProfessionalDialog("🎉 Account Created!", "Registration completed successfully!\nYou may now login with your credentials.", SUCCESS_COLOR);
-            new LoginFrame().setVisible(true);
-            dispose();
-        } else {
-            showProfessionalDialog("❌ System Error", "Unable to create account at this time.\nPlease try again later.", ACCENT_RED);
-        }
+        registerBtn.setEnabled(false);
+
+        // The password is hashed on LoginVerifier's threads, as logins are; the save itself stays on the EDT
+        LoginVerifier.run(() -> PasswordHasher.hash(pass)).whenComplete((hash, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                showProfessionalDialog("❌ System Error", error instanceof java.util.concurrent.RejectedExecutionException
+                    ? "Too many requests at once.\nPlease try again in a moment." : "Unable to create account at this time.\nPlease try again later.", ACCENT_RED);
+                registerBtn.setEnabled(true);
+            } else if (UserFileHandler.idExists(id)) { // taken while the hash was running
+                showProfessionalDialog("❌ Registration Failed", "This User ID is already registered!\nPlease choose a different identifier.", ACCENT_RED);
+                registerBtn.setEnabled(true);
+            } else if (UserFileHandler.saveUser(id, hash, name, hall, dept, batch, "", mobile)) {
+                showProfessionalDialog("🎉 Account Created!", "Registration completed successfully!\nYou may now login with your credentials.", SUCCESS_COLOR);
+                new LoginFrame().setVisible(true);
+                dispose();
+            } else {
+                showProfessionalDialog("❌ System Error", "Unable to create account at this time.\nPlease try again later.", ACCENT_RED);
+                registerBtn.setEnabled(true);
+            }
+        }));
     }
 
     private String getFieldValue(JTextField field, String placeholder) {
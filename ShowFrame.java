@@ -27,6 +27,9 @@ public class ShowFrame extends JFrame {
     private static final Color TEXT_SECONDARY = new Color(74, 85, 104);
     private static final Color BORDER_COLOR = new Color(226, 232, 240);
 
+    // Most name matches listed while searching
+    private static final int SEARCH_LIMIT = 500;
+
     public ShowFrame(String userId, String userName) {
         this.userId = userId;
         this.userName = userName;
@@ -154,13 +157,16 @@ public class ShowFrame extends JFrame {
             e -> showMainOptions()
         );
 
-        // Create a spacer panel for visual balance
-        JPanel spacerCard = new JPanel();
-        spacerCard.setBackground(BACKGROUND);
+        JPanel yearCard = createOptionCard(
+            "🗓️", "Yearly Trends", 
+            "Weekly averages over the last 12 months",
+            ACCENT_GREEN,
+            e -> new HabitViewer("Last 12 Months", uid, "year").setVisible(true)
+        );
 
         optionsPanel.add(todayCard);
         optionsPanel.add(weekCard);
-        optionsPanel.add(spacerCard);
+        optionsPanel.add(yearCard);
         optionsPanel.add(backCard);
 
         mainPanel.add(optionsPanel, BorderLayout.CENTER);
@@ -406,22 +412,16 @@ public class ShowFrame extends JFrame {
             BorderFactory.createEmptyBorder(20, 20, 20, 20)
         ));
 
-        List<String[]> users = UserFileHandler.getAllUsers();
         String[] columns = {"User ID", "Name", "Status"};
-        Object[][] data = new Object[users.size()][3];
-        
-        for (int i = 0; i < users.size(); i++) {
-            data[i][0] = users.get(i)[0];
-            data[i][1] = users.get(i)[1];
-            data[i][2] = "Active"; // You can modify this based on actual status
-        }
-
-        JTable table = new JTable(data, columns) {
+        DefaultTableModel model = new DefaultTableModel(columns, 0) {
             @Override
             public boolean isCellEditable(int row, int column) {
                 return false;
             }
         };
+        fillUserTable(model, UserFileHandler.getAllUserRecords());
+
+        JTable table = new JTable(model);
 
         // Modern table styling
         table.setFont(new Font("Segoe UI", Font.PLAIN, 14));
@@ -497,12 +497,27 @@ public class ShowFrame extends JFrame {
         infoLabel.setForeground(TEXT_SECONDARY);
         infoLabel.setBorder(BorderFactory.createEmptyBorder(15, 0, 0, 0));
 
+        panel.add(createFilterPanel(model), BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
         panel.add(infoLabel, BorderLayout.SOUTH);
 
         return panel;
     }
 
+    private JPanel createFilterPanel(DefaultTableModel model) {
+        UserFilterPanel filterPanel = new UserFilterPanel("All Users", 13, TEXT_SECONDARY, SEARCH_LIMIT, users -> fillUserTable(model, users));
+        filterPanel.setBackground(CARD_BACKGROUND);
+        filterPanel.setBorder(BorderFactory.createEmptyBorder(0, 0, 15, 0));
+        return filterPanel;
+    }
+
+    private void fillUserTable(DefaultTableModel model, List<UserRecord> users) {
+        model.setRowCount(0);
+        for (UserRecord user : users) {
+            model.addRow(new Object[]{user.id, user.name, "Active"}); // You can modify this based on actual status
+        }
+    }
+
     private JButton createModernButton(String text, Color bgColor) {
         JButton button = new JButton(text) {
             @Override
@@ -0,0 +1,211 @@
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * "Users like me": every user's weekly habit averages form one row of a flat
+ * float matrix, one column per built-in habit of HabitRegistry. Habits users
+ * define themselves are left out: they are rarely shared, and a column each
+ * would grow every row with every name anyone invents. Rows are stored
+ * unit-length so cosine similarity is a plain dot product, and a query scans
+ * the rows in parallel chunks, each keeping its own small top-k heap. Rows are
+ * filled from WeeklyAverages and rebuilt when it starts a new version; a save
+ * rewrites only the row of the user who saved.
+ */
+public class SimilarityIndex {
+
+    private static final int CHUNK = 4096; // rows scanned per parallel task
+
+    public static class Match {
+        public final String userId;
+        public final double similarity; // cosine, 0..1 since averages are never negative
+
+        Match(String userId, double similarity) {
+            this.userId = userId;
+            this.similarity = similarity;
+        }
+    }
+
+    // WeeklyAverages version the rows were built from
+    private static long loaded = -1;
+    private static boolean synthetic = false; // benchmark rows, never reloaded
+    private static Map<String, Integer> columnOf = builtInColumns();
+    private static int dims = columnOf.size();
+    private static final Map<String, Integer> rowOf = new HashMap<>();
+    private static String[] ids = new String[0];
+    private static float[] matrix = new float[0]; // row-major, rows * dims
+    private static int rows = 0;
+
+    // ----------------- Queries -----------------
+
+    // The k users whose habit mix is closest to userId's, most similar first
+    public static synchronized List<Match> nearest(String userId, int k) {
+        ensureLoaded();
+        Integer row = rowOf.get(userId);
+        if (row == null || k <= 0 || isZero(row)) return new ArrayList<>();
+
+        final float[] m = matrix;
+        final int d = dims, self = row, n = rows;
+        int chunks = (n + CHUNK - 1) / CHUNK;
+
+        List<PriorityQueue<long[]>> partial = IntStream.range(0, chunks).parallel()
+            .mapToObj(c -> scan(m, d, self, c * CHUNK, Math.min(n, (c + 1) * CHUNK), k))
+            .collect(Collectors.toList());
+
+        // Merge the per-chunk heaps; entries are {row, float bits of score}
+        PriorityQueue<long[]> best = new PriorityQueue<>(k + 1, WEAKEST_FIRST);
+        for (PriorityQueue<long[]> heap : partial) {
+            for (long[] e : heap) offer(best, e, k);
+        }
+        List<long[]> sorted = new ArrayList<>(best);
+        sorted.sort(WEAKEST_FIRST.reversed());
+
+        List<Match> result = new ArrayList<>();
+        for (long[] e : sorted) {
+            result.add(new Match(ids[(int) e[0]], Float.intBitsToFloat((int) e[1])));
+        }
+        return result;
+    }
+
+    // ----------------- Updates -----------------
+
+    // Called after a user's habit file was written; rewrites that user's row only
+    public static synchronized void onHabitSaved(String userId, Map<String, Double> weeklyAverages) {
+        if (!synthetic && !WeeklyAverages.isCurrent(loaded)) return; // first query will pick the change up anyway
+        Integer row = rowOf.get(userId);
+        if (row == null) row = addRow(userId);
+        setRow(row, weeklyAverages);
+    }
+
+    private static void ensureLoaded() {
+        if (synthetic || WeeklyAverages.isCurrent(loaded)) return;
+        List<String> userIds = new ArrayList<>();
+        for (UserRecord r : UserIndex.all()) userIds.add(r.id);
+        Map<String, Map<String, Double>> weekly = new HashMap<>();
+        long version = WeeklyAverages.load(weekly);
+
+        rowOf.clear();
+        rows = 0;
+        ids = new String[Math.max(16, userIds.size())];
+        matrix = new float[ids.length * dims];
+        for (String id : userIds) {
+            Map<String, Double> averages = weekly.get(id);
+            setRow(addRow(id), averages != null ? averages : WeeklyAverages.of(id));
+        }
+        loaded = version;
+    }
+
+    private static Map<String, Integer> builtInColumns() {
+        Map<String, Integer> columns = new HashMap<>();
+        for (String habit : HabitRegistry.defaults()) columns.put(habit, columns.size());
+        return columns;
+    }
+
+    private static int addRow(String userId) {
+        if (rows == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+            matrix = Arrays.copyOf(matrix, ids.length * dims);
+        }
+        ids[rows] = userId;
+        rowOf.put(userId, rows);
+        return rows++;
+    }
+
+    // Store the averages scaled to unit length; users with no data stay all zero
+    private static void setRow(int row, Map<String, Double> averages) {
+        int base = row * dims;
+        Arrays.fill(matrix, base, base + dims, 0f);
+        double norm = 0;
+        for (Map.Entry<String, Double> e : averages.entrySet()) {
+            double v = e.getValue();
+            Integer column = columnOf.get(e.getKey());
+            if (v <= 0 || column == null) continue; // a user-defined habit
+            matrix[base + column] = (float) v;
+            norm += v * v;
+        }
+        if (norm == 0) return;
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = base; i < base + dims; i++) matrix[i] *= scale;
+    }
+
+    private static boolean isZero(int row) {
+        for (int i = row * dims; i < (row + 1) * dims; i++) {
+            if (matrix[i] != 0f) return false;
+        }
+        return true;
+    }
+
+    // ----------------- Scan -----------------
+
+    private static PriorityQueue<long[]> scan(float[] m, int d, int self, int from, int to, int k) {
+        PriorityQueue<long[]> heap = new PriorityQueue<>(k + 1, WEAKEST_FIRST);
+        int q = self * d;
+        for (int r = from; r < to; r++) {
+            if (r == self) continue;
+            int base = r * d;
+            float dot = 0f;
+            for (int i = 0; i < d; i++) dot += m[q + i] * m[base + i];
+            if (dot <= 0f) continue; // nothing in common, or a user without data
+            offer(heap, new long[]{r, Float.floatToIntBits(dot)}, k);
+        }
+        return heap;
+    }
+
+    private static void offer(PriorityQueue<long[]> heap, long[] entry, int k) {
+        if (heap.size() < k) {
+            heap.add(entry);
+        } else if (WEAKEST_FIRST.compare(entry, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    // Lower score first; on equal score the later row is considered weaker
+    private static final Comparator<long[]> WEAKEST_FIRST = (a, b) -> {
+        int c = Float.compare(Float.intBitsToFloat((int) a[1]), Float.intBitsToFloat((int) b[1]));
+        return c != 0 ? c : Long.compare(b[0], a[0]);
+    };
+
+    // ----------------- Benchmark -----------------
+
+    // Query time over synthetic users (no files touched): java SimilarityIndex [users] [habits] [queries]
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int habitCount = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        Random rnd = new Random(42);
+
+        synchronized (SimilarityIndex.class) {
+            columnOf = new HashMap<>();
+            for (int h = 0; h < habitCount; h++) columnOf.put("habit" + h, h);
+            dims = habitCount;
+            rowOf.clear();
+            rows = 0;
+            ids = new String[users];
+            matrix = new float[users * dims];
+            for (int u = 0; u < users; u++) {
+                Map<String, Double> averages = new HashMap<>();
+                for (int h = 0; h < habitCount; h++) {
+                    if (rnd.nextInt(4) != 0) averages.put("habit" + h, rnd.nextDouble() * 8);
+                }
+                setRow(addRow("u" + u), averages);
+            }
+            synthetic = true;
+        }
+
+        for (int pass = 0; pass < 2; pass++) { // first pass warms up the JIT
+            long[] nanos = new long[queries];
+            for (int q = 0; q < queries; q++) {
+                String id = "u" + rnd.nextInt(users);
+                long start = System.nanoTime();
+                nearest(id, 10);
+                nanos[q] = System.nanoTime() - start;
+            }
+            if (pass == 0) continue;
+            Arrays.sort(nanos);
+            System.out.printf("%,d users x %d habits, %d threads: p50 %.2f ms, p99 %.2f ms per query%n",
+                users, habitCount, Runtime.getRuntime().availableProcessors(),
+                nanos[queries / 2] / 1e6, nanos[Math.min(queries - 1, queries * 99 / 100)] / 1e6);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+import java.io.*;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Current / longest streaks and goal attainment per user and habit. The
+ * numbers are kept in the user's _streaks.txt and moved forward by saveHabit:
+ * saving a new latest day, or saving the latest day again, is O(habits);
+ * editing an older day or changing a goal recomputes that one user from their
+ * history. Reading a streak never
+ * touches the habit file.
+ */
+public class StreakTracker {
+
+    public static class Streak {
+        public final String habit;
+        public final int current;   // consecutive days up to today (or yesterday, if today isn't logged yet)
+        public final int longest;
+        public final int goal;      // daily goal, 0 = none
+        public final int doneDays;  // days with a value > 0
+        public final int goalDays;  // days the goal was reached
+
+        Streak(String habit, int current, int longest, int goal, int doneDays, int goalDays) {
+            this.habit = habit;
+            this.current = current;
+            this.longest = longest;
+            this.goal = goal;
+            this.doneDays = doneDays;
+            this.goalDays = goalDays;
+        }
+
+        // Share of done days on which the goal was met, 0..1
+        public double goalRate() {
+            return goal > 0 && doneDays > 0 ? (double) goalDays / doneDays : 0.0;
+        }
+    }
+
+    // Running state of one habit; current counts days ending at lastDone. The state from
+    // before lastDone was added is kept, so that day can be taken out and saved again
+    private static class State {
+        int lastDone = Integer.MIN_VALUE;
+        int current, longest, doneDays, goalDays, goal;
+        int lastValue = -1; // value added on lastDone, -1 if not known (a file from before it was kept)
+        int prevLastDone = Integer.MIN_VALUE, prevCurrent, prevLongest;
+
+        void add(int day, int value) {
+            if (value <= 0) return;
+            prevLastDone = lastDone;
+            prevCurrent = current;
+            prevLongest = longest;
+            current = lastDone == day - 1 ? current + 1 : 1;
+            lastDone = day;
+            lastValue = value;
+            longest = Math.max(longest, current);
+            doneDays++;
+            if (goal > 0 && value >= goal) goalDays++;
+        }
+
+        // Takes lastDone's value back out; only the latest day can be taken out
+        void removeLast() {
+            doneDays--;
+            if (goal > 0 && lastValue >= goal) goalDays--;
+            lastDone = prevLastDone;
+            current = prevCurrent;
+            longest = prevLongest;
+            lastValue = -1;
+        }
+    }
+
+    private static class UserStreaks {
+        int lastDay = Integer.MIN_VALUE; // latest day folded in
+        final Map<String, State> habits = new LinkedHashMap<>();
+    }
+
+    private static final Map<String, UserStreaks> cache = new HashMap<>();
+
+    // ----------------- Queries -----------------
+
+    public static synchronized List<Streak> streaks(String userId) {
+        UserStreaks user = load(userId);
+        int today = (int) LocalDate.now().toEpochDay();
+        List<Streak> result = new ArrayList<>();
+        for (Map.Entry<String, State> e : user.habits.entrySet()) {
+            State s = e.getValue();
+            int current = s.lastDone >= today - 1 ? s.current : 0; // a missed day breaks the streak
+            result.add(new Streak(e.getKey(), current, s.longest, s.goal, s.doneDays, s.goalDays));
+        }
+        return result;
+    }
+
+    // The habit with the longest running streak, or null if nothing is running
+    public static Streak best(String userId) {
+        Streak best = null;
+        for (Streak s : streaks(userId)) {
+            if (s.current > 0 && (best == null || s.current > best.current)) best = s;
+        }
+        return best;
+    }
+
+    // ----------------- Updates -----------------
+
+    // Called by saveHabit after the day was written
+    public static synchronized void onHabitSaved(String userId, String date, Map<String, Integer> habitData) {
+        int day;
+        try { day = (int) LocalDate.parse(date).toEpochDay(); }
+        catch (Exception e) { return; }
+
+        UserStreaks user = load(userId);
+        if (day > user.lastDay || (day == user.lastDay && canReopen(user))) {
+            if (day == user.lastDay) {
+                for (State s : user.habits.values()) {
+                    if (s.lastDone == day) s.removeLast(); // the day is saved again as a whole
+                }
+            }
+            Map<String, Integer> goals = null;
+            for (Map.Entry<String, Integer> e : habitData.entrySet()) {
+                State s = user.habits.get(e.getKey());
+                if (s == null) {
+                    if (goals == null) goals = UserFileHandler.getUserHabits(userId);
+                    s = new State();
+                    s.goal = goals.getOrDefault(e.getKey(), 0);
+                    user.habits.put(e.getKey(), s);
+                }
+                s.add(day, e.getValue() == null ? 0 : e.getValue());
+            }
+            user.lastDay = day;
+        } else {
+            user = rebuild(userId); // an earlier day was overwritten
+        }
+        cache.put(userId, user);
+        write(userId, user);
+    }
+
+    // True if every habit done on the latest day knows what that day added
+    private static boolean canReopen(UserStreaks user) {
+        for (State s : user.habits.values()) {
+            if (s.lastDone == user.lastDay && s.lastValue < 0) return false;
+        }
+        return true;
+    }
+
+    // Goal attainment depends on the goal, so a new goal means recounting
+    public static synchronized void onGoalsChanged(String userId) {
+        recount(userId);
+    }
+
+    // The habit file was replaced outside saveHabit (e.g. by an admin)
+    public static synchronized void onHistoryChanged(String userId) {
+        recount(userId);
+    }
+
+    private static void recount(String userId) {
+        UserStreaks user = rebuild(userId);
+        cache.put(userId, user);
+        write(userId, user);
+    }
+
+    // ----------------- Persistence -----------------
+
+    private static UserStreaks load(String userId) {
+        UserStreaks user = cache.get(userId);
+        if (user != null) return user;
+        user = read(userId);
+        if (user == null) {
+            user = rebuild(userId);
+            write(userId, user);
+        }
+        cache.put(userId, user);
+        return user;
+    }
+
+    private static UserStreaks rebuild(String userId) {
+        HabitSeries series = UserFileHandler.readHabitSeries(userId);
+        Map<String, Integer> goals = UserFileHandler.getUserHabits(userId);
+        UserStreaks user = new UserStreaks();
+        for (int h = 0; h < series.habits.length; h++) {
+            State s = new State();
+            s.goal = goals.getOrDefault(series.habits[h], 0);
+            for (int d = 0; d < series.dayCount(); d++) {
+                s.add(series.days[d], series.values[h][d]);
+            }
+            user.habits.put(series.habits[h], s);
+        }
+        // Days are only folded in once they are in the file
+        for (int d = series.dayCount() - 1; d >= 0 && user.lastDay == Integer.MIN_VALUE; d--) {
+            for (int h = 0; h < series.habits.length; h++) {
+                if (series.has(h, d)) { user.lastDay = series.days[d]; break; }
+            }
+        }
+        return user;
+    }
+
+    private static File file(String userId) {
+        return HabitPaths.streakFile(userId);
+    }
+
+    // Line 1: last folded day; then habit,lastDone,current,longest,doneDays,goalDays,goal,
+    // lastValue,prevLastDone,prevCurrent,prevLongest (the last four missing in older files)
+    private static UserStreaks read(String userId) {
+        File f = file(userId);
+        if (!f.exists()) return null;
+        try (BufferedReader br = new BufferedReader(new FileReader(f))) {
+            UserStreaks user = new UserStreaks();
+            user.lastDay = Integer.parseInt(br.readLine().trim());
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] p = line.split(",");
+                if (p.length < 7) continue;
+                State s = new State();
+                s.lastDone = Integer.parseInt(p[1]);
+                s.current = Integer.parseInt(p[2]);
+                s.longest = Integer.parseInt(p[3]);
+                s.doneDays = Integer.parseInt(p[4]);
+                s.goalDays = Integer.parseInt(p[5]);
+                s.goal = Integer.parseInt(p[6]);
+                if (p.length >= 11) {
+                    s.lastValue = Integer.parseInt(p[7]);
+                    s.prevLastDone = Integer.parseInt(p[8]);
+                    s.prevCurrent = Integer.parseInt(p[9]);
+                    s.prevLongest = Integer.parseInt(p[10]);
+                }
+                user.habits.put(HabitRegistry.canonical(p[0]), s);
+            }
+            return user;
+        } catch (Exception e) {
+            return null; // unreadable: rebuilt from the habit file
+        }
+    }
+
+    private static void write(String userId, UserStreaks user) {
+        File f = file(userId);
+        f.getParentFile().mkdirs();
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(f, false))) {
+            bw.write(String.valueOf(user.lastDay));
+            bw.newLine();
+            for (Map.Entry<String, State> e : user.habits.entrySet()) {
+                State s = e.getValue();
+                bw.write(e.getKey() + "," + s.lastDone + "," + s.current + "," + s.longest + ","
+                         + s.doneDays + "," + s.goalDays + "," + s.goal + "," + s.lastValue + ","
+                         + s.prevLastDone + "," + s.prevCurrent + "," + s.prevLongest);
+                bw.newLine();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,601 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The original layout: users.txt with one comma-separated user per line (plus
+ * users.log, see below), and
+ * per user habit segments ("YYYY-MM-DD,Habit:val,..." lines, split by month
+ * and year as described below) and <id>_goals.txt ("name,goal,unit") in the
+ * user's shard under habits/ (see HabitPaths).
+ */
+public class TextFileStorage implements HabitStorage {
+
+    private final File userFile = new File("users.txt");
+    private final File userLog = new File("users.log");
+
+    public TextFileStorage() {
+        try { HabitPaths.lockShared(); } // HabitVerifier --quarantine must not rewrite segments under us
+        catch(IOException e){ e.printStackTrace(); }
+    }
+
+    File goalFile(String userId) {
+        return HabitPaths.goalFile(userId);
+    }
+
+    // ----------------- Users -----------------
+    //
+    // users.txt is a checkpoint; every registration, password change and
+    // profile edit since then is one checksummed line appended to users.log
+    // (the whole record, so replaying it twice is harmless). Reading replays
+    // the log over the checkpoint; every CHECKPOINT_RECORDS appends the merged
+    // table is written back to users.txt and the log starts over. A line torn
+    // by a crash fails its checksum and is dropped.
+
+    private static final int CHECKPOINT_RECORDS = 1000;
+
+    private Set<String> userIds = null; // ids in the checkpoint and log, known after the first read
+    private int logRecords = 0;
+    private BloomFilter idFilter = null; // over the ids of the last read
+
+    @Override
+    public synchronized List<UserRecord> readUsers() {
+        Map<String, UserRecord> users = new LinkedHashMap<>();
+        int replayed = 0;
+        BloomFilter filter = null;
+        try {
+            long logFrom = readSnapshot(users);
+            if(logFrom < 0) {
+                logFrom = 0;
+                if(userFile.exists()) {
+                    try (BufferedReader br = new BufferedReader(new FileReader(userFile))) {
+                        String line;
+                        while((line = br.readLine()) != null){
+                            if(line.isEmpty()) continue;
+                            UserRecord r = UserRecord.parse(line);
+                            users.putIfAbsent(r.id, r);
+                        }
+                    }
+                }
+            } else {
+                replayed = snapshotLogRecords;
+                filter = snapshotFilter;
+            }
+            replayed += replayLog(users, logFrom, filter);
+        } catch(Exception e){ e.printStackTrace(); }
+        if(filter == null || filter.isFull()) { // no snapshot, or the log outgrew its filter
+            filter = new BloomFilter(2 * users.size());
+            for(String id : users.keySet()) filter.add(id);
+        }
+        idFilter = filter;
+        userIds = new HashSet<>(users.keySet());
+        logRecords = replayed;
+        return new ArrayList<>(users.values());
+    }
+
+    // Apply users.log from byte offset on, adding the ids to filter (when given); a torn last
+    // line is cut off so the next append starts clean
+    private int replayLog(Map<String, UserRecord> users, long from, BloomFilter filter) throws IOException {
+        if(!userLog.exists()) return 0;
+        byte[] log = Files.readAllBytes(userLog.toPath());
+        int replayed = 0;
+        int start = (int) Math.min(from, log.length);
+        int end = start;
+        for(int i = start; i < log.length; i++) {
+            if(log[i] != '\n') continue;
+            String line = new String(log, end, i - end, StandardCharsets.UTF_8);
+            end = i + 1;
+            String text = hasChecksum(line) ? stripChecksum(line) : null;
+            if(text == null) continue; // damaged
+            UserRecord r = UserRecord.parse(text);
+            users.put(r.id, r);
+            if(filter != null) filter.add(r.id);
+            replayed++;
+        }
+        if(end < log.length) {
+            try (RandomAccessFile raf = new RandomAccessFile(userLog, "rw")) { raf.setLength(end); }
+        }
+        return replayed;
+    }
+
+    @Override
+    public synchronized void addUser(UserRecord record) throws IOException {
+        if(userIds == null) readUsers();
+        append(record);
+        userIds.add(record.id);
+    }
+
+    // One appended line, whatever the size of the table
+    @Override
+    public synchronized boolean updateUser(UserRecord record) throws IOException {
+        if(userIds == null) readUsers();
+        if(!userIds.contains(record.id)) return false;
+        append(record);
+        return true;
+    }
+
+    private void append(UserRecord record) throws IOException {
+        try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(userLog, true), StandardCharsets.UTF_8))) {
+            bw.write(withChecksum(record.toLine()));
+            bw.newLine();
+        }
+        if(++logRecords >= CHECKPOINT_RECORDS) checkpoint();
+    }
+
+    // Fold the log into users.txt; a crash before the log is cleared just replays it again
+    public synchronized void checkpoint() throws IOException {
+        if(logRecords == 0 && (userIds != null || !userLog.exists())) return;
+        List<UserRecord> users = readUsers();
+        File tempFile = new File("users_temp.txt");
+        try(BufferedWriter bw = new BufferedWriter(new FileWriter(tempFile))) {
+            for(UserRecord r : users){
+                bw.write(r.toLine());
+                bw.newLine();
+            }
+        }
+        Files.move(tempFile.toPath(), userFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        DataWatcher.ownWrite(userFile);
+        new FileOutputStream(userLog, false).close();
+        logRecords = 0;
+        writeSnapshot(users, 0, 0);
+    }
+
+    @Override
+    public synchronized BloomFilter idFilter() {
+        return idFilter;
+    }
+
+    // Clean shutdown: leave a snapshot so the next start skips parsing users.txt
+    @Override
+    public synchronized void close() throws IOException {
+        if(userIds == null) return; // users were never read, whatever snapshot there is still holds
+        List<UserRecord> users = readUsers();
+        writeSnapshot(users, userLog.length(), logRecords);
+    }
+
+    // ----------------- Startup snapshot -----------------
+    //
+    // users.snap is the merged user table in binary, stamped with the size and
+    // time of the users.txt it was built from and how far into users.log it
+    // reaches. It is written on clean shutdown and at each checkpoint; on
+    // startup it is mapped and read in one go, and only log records past that
+    // point are replayed. If users.txt changed since (an admin edit), the
+    // snapshot is ignored and the text is parsed as before. The Bloom filter
+    // over the ids is stored after the users, so idExists can screen ids
+    // without hashing the whole table on every start.
+
+    private static final int SNAPSHOT_MAGIC = 0x55534e32; // "USN2"; a USN1 file is ignored and rewritten
+
+    private final File userSnapshot = new File("users.snap");
+    private int snapshotLogRecords = 0;
+    private BloomFilter snapshotFilter = null;
+
+    // Users of a still-valid snapshot into users; returns the users.log offset to replay from, or -1
+    private long readSnapshot(Map<String, UserRecord> users) {
+        if(!userSnapshot.exists()) return -1;
+        try (FileChannel ch = FileChannel.open(userSnapshot.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            int end = buf.limit() - 4;
+            if(end < 36 || buf.getInt(0) != SNAPSHOT_MAGIC) return -1;
+            CRC32C crc = new CRC32C();
+            crc.update(buf.slice(0, end));
+            if((int) crc.getValue() != buf.getInt(end)) return -1;
+
+            long textLength = buf.getLong(4), textModified = buf.getLong(12), logOffset = buf.getLong(20);
+            int logCount = buf.getInt(28);
+            if(textLength != userFile.length() || textModified != userFile.lastModified() || logOffset > userLog.length()) return -1;
+            int count = buf.getInt(32);
+
+            byte[] data = new byte[end - 36]; // one bulk copy, then every field is decoded straight out of it
+            buf.get(36, data);
+            int[] pos = { 0 };
+            String[] values = new String[readInt(data, pos)];
+            for(int v = 0; v < values.length; v++) values[v] = readString(data, pos);
+            for(int i = 0; i < count; i++) {
+                String id = readString(data, pos), password = readString(data, pos), name = readString(data, pos);
+                String hall = values[readInt(data, pos)], dept = values[readInt(data, pos)];
+                String batch = values[readInt(data, pos)], season = values[readInt(data, pos)];
+                users.put(id, new UserRecord(id, password, name, hall, dept, batch, season, readString(data, pos)));
+            }
+            snapshotFilter = BloomFilter.readFrom(ByteBuffer.wrap(data, pos[0], data.length - pos[0]));
+            snapshotLogRecords = logCount;
+            return logOffset;
+        } catch(Exception e){
+            e.printStackTrace();
+            users.clear();
+            return -1;
+        }
+    }
+
+    private void writeSnapshot(List<UserRecord> users, long logOffset, int logCount) throws IOException {
+        File tempFile = new File("users_snap.tmp");
+        CRC32C crc = new CRC32C();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(new FileOutputStream(tempFile), crc)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(userFile.length());
+            out.writeLong(userFile.lastModified());
+            out.writeLong(logOffset);
+            out.writeInt(logCount);
+            out.writeInt(users.size());
+            // hall, dept, batch and season repeat across users: each distinct value is stored once
+            Map<String, Integer> values = new LinkedHashMap<>();
+            for(UserRecord r : users) {
+                for(String v : new String[] { r.hall, r.dept, r.batch, r.season }) values.putIfAbsent(v, values.size());
+            }
+            out.writeInt(values.size());
+            for(String v : values.keySet()) writeString(out, v);
+            for(UserRecord r : users) {
+                writeString(out, r.id);
+                writeString(out, r.password);
+                writeString(out, r.name);
+                out.writeInt(values.get(r.hall));
+                out.writeInt(values.get(r.dept));
+                out.writeInt(values.get(r.batch));
+                out.writeInt(values.get(r.season));
+                writeString(out, r.mobile);
+            }
+            BloomFilter filter = new BloomFilter(2 * users.size());
+            for(UserRecord r : users) filter.add(r.id);
+            filter.writeTo(out);
+            out.flush();
+            out.writeInt((int) crc.getValue());
+        }
+        Files.move(tempFile.toPath(), userSnapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        if(b.length > 0xffff) throw new IOException("User field too long for a snapshot"); // users.txt is parsed instead
+        out.writeShort(b.length);
+        out.write(b);
+    }
+
+    private static String readString(byte[] data, int[] pos) {
+        int length = readShort(data, pos);
+        String s = new String(data, pos[0], length, StandardCharsets.UTF_8);
+        pos[0] += length;
+        return s;
+    }
+
+    private static int readShort(byte[] data, int[] pos) {
+        int p = pos[0];
+        pos[0] += 2;
+        return (data[p] & 0xff) << 8 | (data[p + 1] & 0xff);
+    }
+
+    private static int readInt(byte[] data, int[] pos) {
+        return readShort(data, pos) << 16 | readShort(data, pos);
+    }
+
+    // ----------------- Habit days -----------------
+    //
+    // A user's days are split by period: the current and previous month each in
+    // a plain <id>_habits.YYYY-MM.txt, everything older folded into a binary
+    // <id>_habits.YYYY.bin per year (see HabitRecordCodec, a few bytes a day).
+    // A last-N-days view opens one or two small month files; a year archive is
+    // only decoded when a range reaches into it. Year archives from before the
+    // codec (gzip'd text, <id>_habits.YYYY.gz) are still read, and folded into
+    // the year's .bin the next time the user saves.
+
+    private static final int HOT_MONTHS = 2;
+
+    // A user's segments only ever change under that user's lock, so saves and reads of
+    // different users run side by side; the user lines keep the object's own lock
+    private final Map<String, Object> dayLocks = new ConcurrentHashMap<>();
+
+    private Object dayLock(String userId) {
+        return dayLocks.computeIfAbsent(userId, id -> new Object());
+    }
+
+    @Override
+    public SortedMap<Integer, String> readDays(String userId, int from, int to) {
+        synchronized (dayLock(userId)) {
+            return readDaysLocked(userId, from, to);
+        }
+    }
+
+    private SortedMap<Integer, String> readDaysLocked(String userId, int from, int to) {
+        SortedMap<Integer, String> days = new TreeMap<>();
+        List<String> damaged = new ArrayList<>();
+        try {
+            splitLegacy(userId);
+            // archives first: a month not folded into its year yet is the newer copy
+            List<File> files = new ArrayList<>();
+            if (from < hotStart()) files.addAll(segments(userId, from, to, true));
+            files.addAll(segments(userId, from, to, false));
+            for (File f : files) {
+                try { readSegment(f, from, to, days, damaged); }
+                catch(IOException e){ damaged.add(f.getName() + ": " + e.getMessage()); } // the other segments still load
+            }
+        } catch(Exception e){ e.printStackTrace(); }
+        if (!damaged.isEmpty()) System.err.println("Skipped damaged habit records of " + userId + " (see java HabitVerifier): " + damaged);
+        return days;
+    }
+
+    // Only the day's segment is rewritten: a month file, or the year archive for a cold day
+    @Override
+    public String putDay(String userId, int day, String kvs) throws IOException {
+        synchronized (dayLock(userId)) {
+            splitLegacy(userId);
+            foldGzipArchives(userId);
+            foldCold(userId);
+            File segment = segmentOf(userId, day);
+            SortedMap<Integer, String> lines = new TreeMap<>();
+            readForRewrite(segment, lines);
+            String previous = lines.put(day, kvs); // overwrite or add
+            writeSegment(segment, lines);
+            return previous;
+        }
+    }
+
+    // First day that still belongs in a plain month file
+    private static int hotStart() {
+        return (int) YearMonth.now().minusMonths(HOT_MONTHS - 1).atDay(1).toEpochDay();
+    }
+
+    private static File segmentOf(String userId, int day) {
+        LocalDate date = LocalDate.ofEpochDay(day);
+        boolean archive = day < hotStart();
+        return HabitPaths.habitSegment(userId, archive ? String.valueOf(date.getYear()) : YearMonth.from(date).toString(), archive);
+    }
+
+    // Segment files of one kind that can hold days in [from, to]; bounded ranges only probe their own periods
+    private static List<File> segments(String userId, int from, int to, boolean archive) {
+        List<File> files = new ArrayList<>();
+        if (from == Integer.MIN_VALUE || to == Integer.MAX_VALUE) {
+            for (File f : HabitPaths.habitSegments(userId)) {
+                String name = f.getName();
+                if (archive ? name.endsWith(".gz") : name.endsWith(".txt")) files.add(f);
+            }
+            if (archive) { // after the .gz files: a .bin of the same year is the newer copy
+                for (File f : HabitPaths.habitSegments(userId)) if (f.getName().endsWith(".bin")) files.add(f);
+            }
+            return files;
+        }
+        LocalDate first = LocalDate.ofEpochDay(from), last = LocalDate.ofEpochDay(to);
+        if (archive) {
+            for (int year = first.getYear(); year <= last.getYear(); year++) {
+                File old = HabitPaths.gzipArchive(userId, String.valueOf(year));
+                if (old.exists()) files.add(old);
+                File f = HabitPaths.habitSegment(userId, String.valueOf(year), true);
+                if (f.exists()) files.add(f);
+            }
+        } else {
+            for (YearMonth m = YearMonth.from(first); !m.isAfter(YearMonth.from(last)); m = m.plusMonths(1)) {
+                File f = HabitPaths.habitSegment(userId, m.toString(), false);
+                if (f.exists()) files.add(f);
+            }
+        }
+        return files;
+    }
+
+    // Months that have gone cold are merged into their year's archive
+    private static void foldCold(String userId) throws IOException {
+        int hotStart = hotStart();
+        Map<Integer, List<File>> byYear = new TreeMap<>();
+        for (File f : HabitPaths.habitSegments(userId)) {
+            if (!f.getName().endsWith(".txt")) continue;
+            YearMonth month;
+            try { month = YearMonth.parse(periodOf(f)); }
+            catch(Exception e){ continue; } // not a segment we wrote
+            if (month.atDay(1).toEpochDay() < hotStart) byYear.computeIfAbsent(month.getYear(), y -> new ArrayList<>()).add(f);
+        }
+        for (Map.Entry<Integer, List<File>> e : byYear.entrySet()) {
+            File archive = HabitPaths.habitSegment(userId, String.valueOf(e.getKey()), true);
+            SortedMap<Integer, String> lines = new TreeMap<>();
+            readForRewrite(archive, lines);
+            for (File month : e.getValue()) readForRewrite(month, lines);
+            writeSegment(archive, lines);
+            for (File month : e.getValue()) delete(month);
+        }
+    }
+
+    // Each gzip'd year archive is merged into that year's .bin (whose days win) and removed
+    private static void foldGzipArchives(String userId) throws IOException {
+        for (File old : HabitPaths.habitSegments(userId)) {
+            if (!old.getName().endsWith(".gz")) continue;
+            File archive = HabitPaths.habitSegment(userId, periodOf(old), true);
+            SortedMap<Integer, String> lines = new TreeMap<>();
+            readForRewrite(old, lines);
+            readForRewrite(archive, lines);
+            writeSegment(archive, lines);
+            delete(old);
+        }
+    }
+
+    // An old single <id>_habits.txt (or one an admin dropped in) is the whole history: it replaces the segments
+    private static void splitLegacy(String userId) throws IOException {
+        File legacy = HabitPaths.habitFile(userId);
+        if (!legacy.exists()) return;
+        SortedMap<Integer, String> all = new TreeMap<>();
+        readForRewrite(legacy, all);
+        for (File f : HabitPaths.habitSegments(userId)) delete(f);
+        Map<File, SortedMap<Integer, String>> bySegment = new LinkedHashMap<>();
+        for (Map.Entry<Integer, String> e : all.entrySet()) {
+            bySegment.computeIfAbsent(segmentOf(userId, e.getKey()), f -> new TreeMap<>()).put(e.getKey(), e.getValue());
+        }
+        for (Map.Entry<File, SortedMap<Integer, String>> e : bySegment.entrySet()) writeSegment(e.getKey(), e.getValue());
+        delete(legacy);
+    }
+
+    // "2026-10" or "2024" out of <id>_habits.<period>.txt|.bin|.gz
+    private static String periodOf(File f) {
+        String name = f.getName();
+        return name.substring(name.lastIndexOf("_habits.") + "_habits.".length(), name.lastIndexOf('.'));
+    }
+
+    // ----------------- Segment files -----------------
+    //
+    // Each plain line ends in "|" and the CRC32C (8 hex digits) of the text
+    // before it; archive records carry their own (see HabitRecordCodec). A line
+    // written by hand without a checksum is taken as is. Damaged records are
+    // skipped and described in damaged, never the rest of the file with them.
+
+    // Days of one segment in [from, to] into days; throws only if the whole file is unreadable
+    static int readSegment(File f, int from, int to, Map<Integer, String> days, List<String> damaged) throws IOException {
+        if (!f.exists()) return 0;
+        if (f.getName().endsWith(".bin")) {
+            try(InputStream in = new FileInputStream(f)) {
+                List<String> bad = new ArrayList<>();
+                int count = HabitRecordCodec.decode(in, from, to, days, bad);
+                for (String b : bad) damaged.add(f.getName() + " " + b);
+                return count;
+            }
+        }
+        int count = 0;
+        try(InputStream in = new FileInputStream(f);
+            BufferedReader br = new BufferedReader(new InputStreamReader(
+                f.getName().endsWith(".gz") ? new GZIPInputStream(in) : in, StandardCharsets.UTF_8))){
+            String line;
+            int number = 0;
+            while((line=br.readLine()) != null){
+                number++;
+                if (hasChecksum(line)) {
+                    String text = stripChecksum(line);
+                    if (text == null) {
+                        damaged.add(f.getName() + " line " + number + ": " + line);
+                        count++;
+                        continue;
+                    }
+                    line = text;
+                }
+                int comma = line.indexOf(',');
+                String date = comma < 0 ? line : line.substring(0, comma);
+                int day;
+                try { day = (int) LocalDate.parse(date.trim()).toEpochDay(); }
+                catch(Exception e){
+                    if (!line.isBlank()) {
+                        damaged.add(f.getName() + " line " + number + ": " + line);
+                        count++;
+                    }
+                    continue;
+                }
+                if(day < from || day > to) continue;
+                days.put(day, comma < 0 ? "" : line.substring(comma + 1)); // a later line for the same date wins
+            }
+        }
+        return count;
+    }
+
+    // A segment that is about to be rewritten: if anything in it is damaged, the file is copied to
+    // quarantine/ first, so the rewrite never destroys bytes that a person could still recover
+    private static void readForRewrite(File f, Map<Integer, String> days) throws IOException {
+        List<String> damaged = new ArrayList<>();
+        readSegment(f, Integer.MIN_VALUE, Integer.MAX_VALUE, days, damaged);
+        if (!damaged.isEmpty()) quarantine(f, damaged);
+    }
+
+    // Copies the segment as it is to quarantine/<segment>.<time> and appends the damaged records
+    // to quarantine/<segment>.bad, outside habits/. Throws if the copy fails, so the caller never
+    // gets to rewrite a segment whose original wasn't kept
+    static void quarantine(File f, List<String> damaged) throws IOException {
+        File dir = new File("quarantine");
+        dir.mkdirs();
+        long now = System.currentTimeMillis();
+        File copy = new File(dir, f.getName() + "." + now);
+        for (int n = 1; copy.exists(); n++) copy = new File(dir, f.getName() + "." + now + "-" + n);
+        Files.copy(f.toPath(), copy.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+        try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(dir, f.getName() + ".bad"), true), StandardCharsets.UTF_8))) {
+            for (String d : damaged) {
+                bw.write(d);
+                bw.newLine();
+            }
+        }
+    }
+
+    private static boolean hasChecksum(String line) {
+        return line.length() >= 9 && line.charAt(line.length() - 9) == '|';
+    }
+
+    // The text before "|crc", or null if it doesn't match
+    private static String stripChecksum(String line) {
+        int bar = line.length() - 9;
+        String text = line.substring(0, bar);
+        try {
+            return Integer.parseUnsignedInt(line.substring(bar + 1), 16) == crc32c(text) ? text : null;
+        } catch(NumberFormatException e){
+            return null;
+        }
+    }
+
+    private static String withChecksum(String text) {
+        return text + "|" + String.format("%08x", crc32c(text));
+    }
+
+    private static int crc32c(String text) {
+        CRC32C crc = new CRC32C();
+        crc.update(text.getBytes(StandardCharsets.UTF_8));
+        return (int) crc.getValue();
+    }
+
+    // Written beside the segment and moved over it, so readers never see half an archive
+    static void writeSegment(File f, SortedMap<Integer, String> lines) throws IOException {
+        f.getParentFile().mkdirs();
+        File temp = new File(f.getPath() + ".tmp");
+        if (f.getName().endsWith(".bin")) {
+            try(OutputStream out = new FileOutputStream(temp)) {
+                HabitRecordCodec.encode(lines, out);
+            }
+        } else try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(f.getName().endsWith(".gz")
+                ? new GZIPOutputStream(new FileOutputStream(temp)) : new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            for(Map.Entry<Integer, String> e : lines.entrySet()){
+                String line = LocalDate.ofEpochDay(e.getKey()) + (e.getValue().isEmpty() ? "" : "," + e.getValue());
+                bw.write(withChecksum(line));
+                bw.newLine();
+            }
+        }
+        Files.move(temp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        DataWatcher.ownWrite(f);
+    }
+
+    private static void delete(File f) {
+        f.delete();
+        DataWatcher.ownWrite(f); // a missing file reads back as time 0, length 0
+    }
+
+    // ----------------- Goals -----------------
+
+    @Override
+    public Map<String, String> readGoals(String userId) {
+        Map<String,String> lines = new LinkedHashMap<>();
+        File goalFile = goalFile(userId);
+        if(!goalFile.exists()) return lines;
+        try(BufferedReader br = new BufferedReader(new FileReader(goalFile))) {
+            String line;
+            while((line = br.readLine()) != null){
+                int comma = line.indexOf(',');
+                if(comma <= 0) continue;
+                lines.put(line.substring(0, comma), line);
+            }
+        } catch(Exception e){ e.printStackTrace(); }
+        return lines;
+    }
+
+    @Override
+    public void writeGoals(String userId, Collection<String> lines) throws IOException {
+        File goalFile = goalFile(userId);
+        goalFile.getParentFile().mkdirs();
+        try(BufferedWriter bw = new BufferedWriter(new FileWriter(goalFile,false))) {
+            for(String line : lines){
+                bw.write(line);
+                bw.newLine();
+            }
+        }
+        DataWatcher.ownWrite(goalFile);
+    }
+}
@@ -1,146 +1,145 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.swing.*;
 
 public class UserFileHandler {
 
-    private static final File userFile = new File("users.txt");
+    // Text files unless started with -Dhabit.storage=kv or sql
+    private static final HabitStorage storage = HabitStorage.open(System.getProperty("habit.storage", "text"));
+
+    static HabitStorage storage() {
+        return storage;
+    }
+
+    // On the way out of the app; lets the backend leave things ready for a fast start
+    public static void close() {
+        try { storage.close(); }
+        catch(IOException e){ e.printStackTrace(); }
+    }
 
     // ----------------- User Handling -----------------
+    // Most free ids are turned away by the Bloom filter without the index lock
     public static boolean idExists(String id) {
-        if (!userFile.exists()) return false;
-        try (BufferedReader br = new BufferedReader(new FileReader(userFile))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data[0].equals(id)) return true;
-            }
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(null, "Error checking ID!");
-        }
-        return false;
+        return UserIndex.mightContain(id) && UserIndex.contains(id);
     }
 
-    public static boolean saveUser(String id, String pass, String name, String hall, String dept, String batch, String season, String mobile) {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(userFile, true))) {
-            bw.write(id + "," + pass + "," + name + "," + hall + "," + dept + "," + batch + "," + season + "," + mobile);
-            bw.newLine();
-            return true;
+    // passwordHash comes from PasswordHasher.hash, which the UI runs through LoginVerifier rather than on the EDT
+    public static boolean saveUser(String id, String passwordHash, String name, String hall, String dept, String batch, String season, String mobile) {
+        if(!PasswordHasher.isHashed(passwordHash)) throw new IllegalArgumentException("saveUser takes a hashed password");
+        UserRecord record = new UserRecord(id, passwordHash, name, hall, dept, batch, season, mobile);
+        try {
+            storage.addUser(record);
         } catch (IOException ex) {
             JOptionPane.showMessageDialog(null, "Error saving data!");
             return false;
         }
+        UserIndex.put(record);
+        CohortStats.onUsersChanged();
+        GlobalStats.onUserAdded();
+        DataEvents.publish(new DataChangeEvent(DataChangeEvent.Type.USER_ADDED, id, null));
+        return true;
     }
 
+    // Name of the user if the password matches, else null. Slow on purpose (see PasswordHasher),
+    // so the UI calls it through LoginVerifier. A row still holding a plain or weaker password is
+    // rehashed on the way, so old accounts migrate as their owners log in.
     public static String validateLogin(String id, String pass) {
-        if (!userFile.exists()) return null;
-        try (BufferedReader br = new BufferedReader(new FileReader(userFile))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data[0].equals(id) && data[1].equals(pass)) {
-                    return data[2];
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return null;
+        UserRecord r = UserIndex.get(id);
+        if(!PasswordHasher.verify(pass, r == null ? null : r.password)) return null;
+        if(PasswordHasher.needsRehash(r.password)) updatePassword(id, pass);
+        return r.name;
     }
 
     public static String getUserName(String id) {
-        if(!userFile.exists()) return "";
-        try (BufferedReader br = new BufferedReader(new FileReader(userFile))) {
-            String line;
-            while((line=br.readLine()) != null) {
-                String[] d = line.split(",");
-                if(d[0].equals(id)) return d[2];
-            }
-        } catch(Exception e) { e.printStackTrace(); }
-        return "";
+        UserRecord r = UserIndex.get(id);
+        return r == null ? "" : r.name;
     }
 
     public static List<String[]> getAllUsers() {
         List<String[]> list = new ArrayList<>();
-        if(!userFile.exists()) return list;
-        try (BufferedReader br = new BufferedReader(new FileReader(userFile))) {
-            String line;
-            while((line = br.readLine()) != null){
-                String[] d = line.split(",");
-                list.add(new String[]{d[0], d[2]});
-            }
-        } catch(Exception e){ e.printStackTrace(); }
+        for(UserRecord r : UserIndex.all()) {
+            list.add(new String[]{r.id, r.name});
+        }
         return list;
     }
 
-    // ----------------- Password Reset Methods -----------------
-    public static boolean validateUserForReset(String id, String mobile) {
-        if(!userFile.exists()) return false;
-        id = id.trim();
-        mobile = mobile.trim();
-        try (BufferedReader br = new BufferedReader(new FileReader(userFile))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(",");
-                if(data.length < 8) continue; // minimum 8 fields: id, pass, name, hall, dept, batch, season, mobile
-                String fileId = data[0].trim();
-                String fileMobile = data[7].trim(); // Mobile field at index 7
-                if(fileId.equals(id) && fileMobile.equals(mobile)) {
-                    return true;
-                }
-            }
-        } catch (Exception e) { e.printStackTrace(); }
-        return false;
+    // All users with every column (hall, dept, batch, ...) kept
+    public static List<UserRecord> getAllUserRecords() {
+        return UserIndex.all();
     }
 
-    public static boolean updatePassword(String id, String newPass) {
-        if(!userFile.exists()) return false;
-        File tempFile = new File("users_temp.txt");
-        boolean updated = false;
-
-        try(BufferedReader br = new BufferedReader(new FileReader(userFile));
-            BufferedWriter bw = new BufferedWriter(new FileWriter(tempFile))) {
-
-            String line;
-            while((line = br.readLine()) != null){
-                String[] data = line.split(",");
-                if(data[0].equals(id)){
-                    data[1] = newPass; // update password only
-                    updated = true;
-                }
-                bw.write(String.join(",", data));
-                bw.newLine();
-            }
+    public static UserRecord getUserRecord(String id) {
+        return UserIndex.get(id);
+    }
 
-        } catch(Exception e){ e.printStackTrace(); return false; }
+    // Users sharing a department, hall or batch, answered from the inverted index
+    public static List<UserRecord> getUsersBy(UserRecord.Attribute attribute, String value) {
+        return UserIndex.filter(attribute, value);
+    }
 
-        if(updated){
-            if(!userFile.delete()) return false;
-            if(!tempFile.renameTo(userFile)) return false;
-        } else {
-            tempFile.delete();
+    // Users whose name starts with or contains query, optionally inside one cohort
+    // (attribute may be null). At most limit name matches, prefix matches first;
+    // an empty query returns the whole cohort.
+    public static List<UserRecord> searchUsers(String query, UserRecord.Attribute attribute, String value, int limit) {
+        if(query == null || query.trim().isEmpty()) {
+            return attribute == null ? UserIndex.all() : UserIndex.filter(attribute, value);
+        }
+        List<UserRecord> result = new ArrayList<>();
+        // Inside a cohort some name matches get dropped, so ask the index for all of them
+        String cohort = UserIndex.normalize(value);
+        for(String id : NameIndex.search(query, attribute == null ? limit : Integer.MAX_VALUE)) {
+            UserRecord r = UserIndex.get(id);
+            if(r == null) continue;
+            if(attribute != null && !UserIndex.normalize(attribute.of(r)).equals(cohort)) continue;
+            result.add(r);
+            if(result.size() >= limit) break;
         }
-        return updated;
+        return result;
+    }
+
+    // Read every user from storage; everything else should go through UserIndex
+    static List<UserRecord> readUserFile() {
+        return storage.readUsers();
+    }
+
+    // Update name, department and mobile of a user; false if the id is not stored
+    public static boolean saveProfile(String id, String name, String dept, String mobile) throws IOException {
+        UserRecord r = UserIndex.get(id);
+        if (r == null) return false;
+        UserRecord updated = new UserRecord(r.id, r.password, name, r.hall, dept, r.batch, r.season, mobile);
+        if (!storage.updateUser(updated)) return false;
+
+        UserIndex.put(updated);
+        CohortStats.onUsersChanged();
+        DataEvents.publish(new DataChangeEvent(DataChangeEvent.Type.PROFILE_UPDATED, id, null));
+        return true;
+    }
+
+    // ----------------- Password Reset Methods -----------------
+    public static boolean validateUserForReset(String id, String mobile) {
+        UserRecord r = UserIndex.get(id.trim());
+        return r != null && r.mobile.trim().equals(mobile.trim());
+    }
+
+    public static boolean updatePassword(String id, String newPass) {
+        UserRecord r = UserIndex.get(id);
+        if(r == null) return false;
+        UserRecord updated = new UserRecord(r.id, PasswordHasher.hash(newPass), r.name, r.hall, r.dept, r.batch, r.season, r.mobile);
+        try {
+            if(!storage.updateUser(updated)) return false;
+        } catch(IOException e){ e.printStackTrace(); return false; }
+        UserIndex.put(updated);
+        return true;
     }
 
     // ----------------- Habit Handling -----------------
     
     // Save habit for a user on a date (overwrite if same date exists)
     public static void saveHabit(String userId, String date, Map<String,Integer> habitData) {
-        File habitFile = new File("habits/" + userId + "_habits.txt");
-        habitFile.getParentFile().mkdirs();
-        Map<String,String> allLines = new LinkedHashMap<>();
-        
-        // Load existing lines
-        if(habitFile.exists()) {
-            try(BufferedReader br = new BufferedReader(new FileReader(habitFile))) {
-                String line;
-                while((line = br.readLine()) != null) {
-                    String[] parts = line.split(",",2);
-                    allLines.put(parts[0], parts.length>1?parts[1]:"");
-                }
-            } catch(Exception e){ e.printStackTrace(); }
-        }
+        int day;
+        try { day = (int) java.time.LocalDate.parse(date).toEpochDay(); }
+        catch(Exception e){ e.printStackTrace(); return; }
 
         // Convert habitData to line string
         StringBuilder sb = new StringBuilder();
@@ -148,95 +147,221 @@ public class UserFileHandler {
             sb.append(habit).append(":").append(habitData.get(habit)).append(",");
         }
         if(sb.length()>0) sb.setLength(sb.length()-1); // remove last comma
-        allLines.put(date, sb.toString()); // overwrite or add
 
-        // Write all lines back
-        try(BufferedWriter bw = new BufferedWriter(new FileWriter(habitFile,false))) {
-            for(String d : allLines.keySet()){
-                bw.write(d + (allLines.get(d).isEmpty() ? "" : "," + allLines.get(d)));
-                bw.newLine();
-            }
-        } catch(Exception e){ e.printStackTrace(); }
+        String previous;
+        try { previous = storage.putDay(userId, day, sb.toString()); } // overwrite or add
+        catch(IOException e){ e.printStackTrace(); return; }
+
+        Map<String,Double> weekly = calculateWeeklyAverages(userId);
+        WeeklyAverages.onHabitSaved(userId, weekly); // first: the engines below read from it
+        Leaderboard.onHabitSaved(userId, weekly);
+        HabitPercentiles.onHabitSaved(userId, weekly);
+        SimilarityIndex.onHabitSaved(userId, weekly);
+        CohortStats.onHabitSaved(userId);
+        StreakTracker.onHabitSaved(userId, date, habitData);
+        HabitRollups.onHabitSaved(userId, date);
+        GlobalStats.onHabitSaved(userId, date, parseDay(previous), habitData);
+        DataEvents.publish(new DataChangeEvent(DataChangeEvent.Type.HABIT_DAY_SAVED, userId, date));
+    }
+
+    // "Habit:val,Habit:val" -> map; null or malformed parts give nothing
+    private static Map<String,Integer> parseDay(String kvs) {
+        Map<String,Integer> day = new LinkedHashMap<>();
+        if (kvs == null || kvs.isEmpty()) return day;
+        for (String kv : kvs.split(",")) {
+            String[] p = kv.split(":");
+            if (p.length != 2) continue;
+            try { day.put(HabitRegistry.canonical(p[0]), Integer.parseInt(p[1].trim())); }
+            catch (NumberFormatException ignored) {}
+        }
+        return day;
     }
 
     // Load habit for a specific date
     public static Map<String,Integer> loadHabit(String userId, String date) {
         Map<String,Integer> data = new LinkedHashMap<>();
-        File habitFile = new File("habits/" + userId + "_habits.txt");
-        if(!habitFile.exists()) return data;
-
-        try(BufferedReader br = new BufferedReader(new FileReader(habitFile))) {
-            String line;
-            while((line=br.readLine()) != null){
-                String[] parts = line.split(",",2);
-                if(parts[0].equals(date)){
-                    if(parts.length>1){
-                        String[] kvs = parts[1].split(",");
-                        for(String kv : kvs){
-                            String[] arr = kv.split(":");
-                            if(arr.length==2){
-                                data.put(arr[0], Integer.parseInt(arr[1]));
-                            }
-                        }
-                    }
-                    break;
-                }
-            }
-        } catch(Exception e){ e.printStackTrace(); }
+        int day;
+        try { day = (int) java.time.LocalDate.parse(date).toEpochDay(); }
+        catch(Exception e){ return data; }
+        HabitSeries series = readHabitSeries(userId, day, day);
+        for(int h=0; h<series.habits.length; h++){
+            if(series.has(h, 0)) data.put(series.habits[h], series.values[h][0]);
+        }
         return data;
     }
     
-    public static void addHabit(String userId, String habitName, int goal) {
-        // Example implementation: append habit info to a file or store in a map
-        // You should replace this with your actual storage logic
-        System.out.println("Habit added for user " + userId + ": " + habitName + " (Goal: " + goal + ")");
+    // ----------------- Custom Habits & Goals -----------------
+    // Only the habits a user adds (or sets a goal for) are stored, one line each in
+    // habits/<id>_goals.txt as "name,goal,unit"; day lines only carry habits that were entered.
+
+    // user -> habit -> unit from the goals file; habits not listed there use the registry's unit
+    private static final Map<String,Map<String,String>> units = new ConcurrentHashMap<>();
+
+    // Keeps the unit the user already has for this habit
+    public static boolean addHabit(String userId, String habitName, int goal) {
+        return addHabit(userId, habitName, goal, habitName == null ? "hours" : habitUnit(userId, habitName.trim()));
+    }
+
+    // Add a habit for a user or change its daily goal and unit; false if the name can't be stored
+    public static boolean addHabit(String userId, String habitName, int goal, String unit) {
+        String name = habitName == null ? "" : habitName.trim();
+        if(name.isEmpty() || name.contains(",") || name.contains(":") || goal < 0) return false;
+        if(unit == null || unit.trim().isEmpty() || unit.contains(",")) return false;
+        name = HabitRegistry.canonical(name);
+
+        Map<String,String> lines = readGoalLines(userId);
+        lines.put(name, name + "," + goal + "," + unit.trim());
+        try { storage.writeGoals(userId, lines.values()); }
+        catch(IOException e){ e.printStackTrace(); return false; }
+        units.remove(userId);
+        StreakTracker.onGoalsChanged(userId);
+        return true;
+    }
+
+    // "hours" for time-based habits, "problems" / "times" for counted ones, as this user set it up
+    public static String habitUnit(String userId, String habit) {
+        String unit = units.computeIfAbsent(userId, UserFileHandler::readUnits).get(habit);
+        return unit != null ? unit : HabitRegistry.unit(habit);
+    }
+
+    public static boolean isTimed(String userId, String habit) {
+        return habitUnit(userId, habit).equals("hours");
+    }
+
+    // The goals file was edited outside the app; null means every user's
+    static void onGoalsFileChanged(String userId) {
+        if(userId == null) units.clear();
+        else units.remove(userId);
+    }
+
+    private static Map<String,String> readUnits(String userId) {
+        Map<String,String> byHabit = new HashMap<>();
+        for(String line : readGoalLines(userId).values()){
+            String[] parts = line.split(",");
+            if(parts.length > 2 && !parts[2].trim().isEmpty()) byHabit.put(HabitRegistry.canonical(parts[0].trim()), parts[2].trim());
+        }
+        return byHabit;
+    }
+
+    // Default habits followed by the user's own, each with its daily goal (0 = no goal)
+    public static Map<String,Integer> getUserHabits(String userId) {
+        Map<String,Integer> habits = new LinkedHashMap<>();
+        for(String habit : HabitRegistry.defaults()) habits.put(habit, 0);
+        for(String line : readGoalLines(userId).values()){
+            String[] parts = line.split(",");
+            int goal = 0;
+            try { goal = Integer.parseInt(parts[1].trim()); } catch(Exception e){ /* no goal */ }
+            habits.put(HabitRegistry.canonical(parts[0].trim()), goal);
+        }
+        return habits;
+    }
+
+    // habit name -> raw "name,goal,unit" line
+    private static Map<String,String> readGoalLines(String userId) {
+        return storage.readGoals(userId);
     }
 
     // Load last N days habits with date (missing days filled with 0)
     public static List<Map<String,Object>> readHabitsWithDate(String userId, int lastDays){
         List<Map<String,Object>> list = new ArrayList<>();
-        Map<String,Map<String,Integer>> allData = new LinkedHashMap<>();
-        File habitFile = new File("habits/" + userId + "_habits.txt");
-        if(habitFile.exists()){
-            try(BufferedReader br = new BufferedReader(new FileReader(habitFile))){
-                String line;
-                while((line=br.readLine()) != null){
-                    String[] parts = line.split(",",2);
-                    Map<String,Integer> map = new LinkedHashMap<>();
-                    if(parts.length>1){
-                        String[] kvs = parts[1].split(",");
-                        for(String kv : kvs){
-                            String[] arr = kv.split(":");
-                            if(arr.length==2) map.put(arr[0], Integer.parseInt(arr[1]));
-                        }
-                    }
-                    allData.put(parts[0], map);
-                }
-            } catch(Exception e){ e.printStackTrace(); }
-        }
-
-        // Generate lastDays dates
-        java.time.LocalDate today = java.time.LocalDate.now();
-        for(int i=lastDays-1;i>=0;i--){
-            java.time.LocalDate d = today.minusDays(i);
-            String dateStr = d.toString();
-            Map<String,Integer> map = allData.getOrDefault(dateStr,new LinkedHashMap<>());
+        Map<String,Map<String,Integer>> byDate = loadHabitsWithDate(userId, lastDays);
+        for(Map.Entry<String,Map<String,Integer>> day : byDate.entrySet()){
             Map<String,Object> entry = new LinkedHashMap<>();
-            entry.put("date", dateStr);
-            entry.put("habits", map);
+            entry.put("date", day.getKey());
+            entry.put("habits", day.getValue());
             list.add(entry);
         }
         return list;
     }
 
-   @SuppressWarnings("unchecked")
-   public static Map<String, Map<String, Integer>> loadHabitsWithDate(String uid) {
+    // Average per habit over the last 7 days, counting only days where the habit was done (> 0)
+    public static Map<String,Double> calculateWeeklyAverages(String userId) {
+        HabitSeries week = readHabitSeries(userId, 7);
+        Map<String,Double> averages = new LinkedHashMap<>();
+        for(int h=0; h<week.habits.length; h++){
+            averages.put(week.habits[h], week.meanPositive(h));
+        }
+        return averages;
+    }
+
+    // ----------------- Primitive habit series -----------------
+
+    // Last N days ending today as primitive columns
+    public static HabitSeries readHabitSeries(String userId, int lastDays) {
+        int today = (int) java.time.LocalDate.now().toEpochDay();
+        return readHabitSeries(userId, today - lastDays + 1, today);
+    }
+
+    // Whole history: from the first day in the file up to today
+    public static HabitSeries readHabitSeries(String userId) {
+        int today = (int) java.time.LocalDate.now().toEpochDay();
+        return readHabitSeries(userId, Integer.MIN_VALUE, today);
+    }
+
+    // Days in [from, to]; from may be Integer.MIN_VALUE to start at the first stored day
+    // (and then also runs past to if later days are stored)
+    static HabitSeries readHabitSeries(String userId, int from, int to) {
+        SortedMap<Integer,String> lines = storage.readDays(userId, from, from == Integer.MIN_VALUE ? Integer.MAX_VALUE : to);
+        int first = lines.isEmpty() ? Integer.MAX_VALUE : lines.firstKey();
+        int last = lines.isEmpty() ? to : Math.max(to, lines.lastKey());
+        int start = from != Integer.MIN_VALUE ? from : Math.min(first, to);
+        int dayCount = last - start + 1;
+
+        int[] days = new int[dayCount];
+        for(int d=0; d<dayCount; d++) days[d] = start + d;
+
+        // Registry id -> column in this series (-1: not seen yet); ids are small and dense
+        int[] columnOf = new int[HabitRegistry.size()];
+        Arrays.fill(columnOf, -1);
+        List<String> habits = new ArrayList<>();
+        List<int[]> columns = new ArrayList<>();
+        for(Map.Entry<Integer,String> line : lines.entrySet()){
+            int d = line.getKey() - start;
+            String kvs = line.getValue();
+            int pos = 0;
+            while(pos < kvs.length()){
+                int end = kvs.indexOf(',', pos);
+                if(end < 0) end = kvs.length();
+                int colon = kvs.indexOf(':', pos);
+                if(colon > pos && colon < end){
+                    try {
+                        int value = Integer.parseInt(kvs, colon + 1, end, 10);
+                        int id = HabitRegistry.id(kvs, pos, colon);
+                        if(id >= columnOf.length){
+                            int old = columnOf.length;
+                            columnOf = Arrays.copyOf(columnOf, Math.max(id + 1, old * 2));
+                            Arrays.fill(columnOf, old, columnOf.length, -1);
+                        }
+                        if(columnOf[id] < 0){
+                            columnOf[id] = columns.size();
+                            habits.add(HabitRegistry.name(id));
+                            int[] column = new int[dayCount];
+                            Arrays.fill(column, HabitSeries.MISSING);
+                            columns.add(column);
+                        }
+                        columns.get(columnOf[id])[d] = value;
+                    } catch(NumberFormatException e){ /* skip malformed pair */ }
+                }
+                pos = end + 1;
+            }
+        }
+        return new HabitSeries(days, habits.toArray(new String[0]), columns.toArray(new int[0][]));
+    }
+
+    public static Map<String, Map<String, Integer>> loadHabitsWithDate(String uid) {
+        return loadHabitsWithDate(uid, 7); // default last 7 days
+    }
+
+    // Boxed date -> (habit -> value) view of a series, for callers that still want maps
+    private static Map<String, Map<String, Integer>> loadHabitsWithDate(String uid, int lastDays) {
+        HabitSeries series = readHabitSeries(uid, lastDays);
         Map<String, Map<String, Integer>> result = new LinkedHashMap<>();
-        List<Map<String,Object>> list = readHabitsWithDate(uid, 7); // default last 7 days
-        for(Map<String,Object> entry : list){
-            String date = (String) entry.get("date");
-            Map<String,Integer> habits = (Map<String,Integer>) entry.get("habits");
-            result.put(date, habits);
+        for(int d=0; d<series.dayCount(); d++){
+            Map<String,Integer> habits = new LinkedHashMap<>();
+            for(int h=0; h<series.habits.length; h++){
+                if(series.has(h, d)) habits.put(series.habits[h], series.values[h][d]);
+            }
+            result.put(series.date(d), habits);
         }
         return result;
     }
@@ -0,0 +1,86 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Name search plus a department / hall / batch filter, both backed by the
+ * user index. Every keystroke or selection re-runs the search and hands the
+ * matching users to the owner, which decides how to show them (a table in
+ * ShowFrame, a card grid in CompareFrame).
+ */
+public class UserFilterPanel extends JPanel {
+
+    private final JTextField searchField = new JTextField(16);
+    private final JComboBox<String> attributeBox = new JComboBox<>();
+    private final JComboBox<String> valueBox = new JComboBox<>();
+    private final int limit;
+    private final Consumer<List<UserRecord>> onResults;
+
+    public UserFilterPanel(String allLabel, int fontSize, Color labelColor, int limit, Consumer<List<UserRecord>> onResults) {
+        super(new FlowLayout(FlowLayout.LEFT, 10, 0));
+        this.limit = limit;
+        this.onResults = onResults;
+
+        JLabel searchLabel = new JLabel("Search:");
+        searchLabel.setFont(new Font("Segoe UI", Font.BOLD, fontSize));
+        searchLabel.setForeground(labelColor);
+        searchField.setFont(new Font("Segoe UI", Font.PLAIN, fontSize));
+
+        JLabel filterLabel = new JLabel("Filter by:");
+        filterLabel.setFont(new Font("Segoe UI", Font.BOLD, fontSize));
+        filterLabel.setForeground(labelColor);
+
+        attributeBox.addItem(allLabel);
+        for (UserRecord.Attribute attribute : UserRecord.Attribute.values()) {
+            attributeBox.addItem(attribute.label);
+        }
+        valueBox.setEnabled(false);
+        attributeBox.setFont(new Font("Segoe UI", Font.PLAIN, fontSize));
+        valueBox.setFont(new Font("Segoe UI", Font.PLAIN, fontSize));
+        valueBox.setPrototypeDisplayValue("XXXXXXXXXXXXXXXXXXXX");
+
+        attributeBox.addActionListener(e -> {
+            UserRecord.Attribute attribute = attributeFor((String) attributeBox.getSelectedItem());
+            valueBox.removeAllItems();
+            valueBox.setEnabled(attribute != null);
+            if (attribute == null) {
+                refresh();
+                return;
+            }
+            for (String value : UserIndex.values(attribute)) {
+                valueBox.addItem(value); // selecting the first item runs the search
+            }
+        });
+        valueBox.addActionListener(e -> refresh());
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { refresh(); }
+            public void removeUpdate(DocumentEvent e) { refresh(); }
+            public void changedUpdate(DocumentEvent e) { refresh(); }
+        });
+
+        add(searchLabel);
+        add(searchField);
+        add(filterLabel);
+        add(attributeBox);
+        add(valueBox);
+    }
+
+    // Re-run on every keystroke and selection; the name index keeps this cheap
+    public void refresh() {
+        UserRecord.Attribute attribute = attributeFor((String) attributeBox.getSelectedItem());
+        String value = (String) valueBox.getSelectedItem();
+        if (attribute != null && value == null) return; // values are being refilled
+        onResults.accept(UserFileHandler.searchUsers(searchField.getText(), attribute, value, limit));
+    }
+
+    // The attribute behind a combo box label, or null for the "all" entry
+    public static UserRecord.Attribute attributeFor(String label) {
+        for (UserRecord.Attribute attribute : UserRecord.Attribute.values()) {
+            if (attribute.label.equals(label)) return attribute;
+        }
+        return null;
+    }
+}
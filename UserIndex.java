@@ -0,0 +1,177 @@
+import java.util.*;
+
+/**
+ * In-memory copy of users.txt: a primary index by id plus inverted indexes
+ * (department, hall, batch -> ids) so filtered lists cost as much as the
+ * result instead of a scan of the file. Loaded on first use and kept current
+ * by UserFileHandler whenever it writes a user. Name search lives in NameIndex,
+ * which this class keeps in step. A Bloom filter over the ids lets registration
+ * rule out a free id without taking the lock; the text backend hands over the
+ * one stored in users.snap, so it isn't rebuilt on every start.
+ */
+public class UserIndex {
+
+    // id -> record, in file order
+    private static LinkedHashMap<String, UserRecord> byId = null;
+    // attribute -> (normalized value -> ids in file order)
+    private static final Map<UserRecord.Attribute, Map<String, LinkedHashSet<String>>> byAttribute =
+        new EnumMap<>(UserRecord.Attribute.class);
+    // attribute -> (normalized value -> value as first written), for showing in filters
+    private static final Map<UserRecord.Attribute, Map<String, String>> labels =
+        new EnumMap<>(UserRecord.Attribute.class);
+    // every id ever loaded or put since the last load; read without the lock
+    private static volatile BloomFilter idFilter = null;
+
+    // ----------------- Lookups -----------------
+
+    public static synchronized UserRecord get(String id) {
+        ensureLoaded();
+        return byId.get(id);
+    }
+
+    public static synchronized boolean contains(String id) {
+        ensureLoaded();
+        return byId.containsKey(id);
+    }
+
+    // False means the id is surely not registered; true needs contains() to be sure
+    public static boolean mightContain(String id) {
+        BloomFilter filter = idFilter;
+        if (filter == null) {
+            synchronized (UserIndex.class) {
+                ensureLoaded();
+                filter = idFilter;
+            }
+        }
+        return filter.mightContain(id);
+    }
+
+    public static synchronized List<UserRecord> all() {
+        ensureLoaded();
+        return new ArrayList<>(byId.values());
+    }
+
+    public static synchronized int size() {
+        ensureLoaded();
+        return byId.size();
+    }
+
+    // Users whose attribute equals value (case-insensitive); cost is the size of the result
+    public static synchronized List<UserRecord> filter(UserRecord.Attribute attribute, String value) {
+        ensureLoaded();
+        List<UserRecord> result = new ArrayList<>();
+        Set<String> ids = byAttribute.get(attribute).get(normalize(value));
+        if (ids == null) return result;
+        for (String id : ids) result.add(byId.get(id));
+        return result;
+    }
+
+    // Distinct values of an attribute, sorted, as they were first written
+    public static synchronized List<String> values(UserRecord.Attribute attribute) {
+        ensureLoaded();
+        List<String> values = new ArrayList<>(labels.get(attribute).values());
+        values.sort(String.CASE_INSENSITIVE_ORDER);
+        return values;
+    }
+
+    // ----------------- Updates -----------------
+
+    // Insert a new user or replace an existing one, moving it between inverted index entries
+    public static synchronized void put(UserRecord record) {
+        if (byId == null) return; // not loaded yet, the next load reads the file anyway
+        if (!byId.containsKey(record.id)) addToFilter(record.id); // before the id is visible, so mightContain never misses it
+        UserRecord old = byId.put(record.id, record);
+        if (old != null) unindex(old);
+        index(record);
+        NameIndex.update(old, record);
+    }
+
+    // Bring the index in line with a fresh read of users.txt, touching only the users that
+    // differ; returns id -> what happened to it (removed users map to null)
+    public static synchronized Map<String, DataChangeEvent.Type> sync(List<UserRecord> records) {
+        Map<String, DataChangeEvent.Type> changes = new LinkedHashMap<>();
+        if (byId == null) return changes; // nothing cached, the next load reads the file anyway
+        Map<String, UserRecord> fresh = new LinkedHashMap<>();
+        for (UserRecord r : records) fresh.putIfAbsent(r.id, r);
+
+        for (UserRecord old : new ArrayList<>(byId.values())) {
+            if (fresh.containsKey(old.id)) continue;
+            byId.remove(old.id);
+            unindex(old);
+            NameIndex.update(old, null);
+            changes.put(old.id, null);
+        }
+        for (UserRecord r : fresh.values()) {
+            UserRecord old = byId.get(r.id);
+            if (old != null && old.toLine().equals(r.toLine())) continue;
+            put(r);
+            changes.put(r.id, old == null ? DataChangeEvent.Type.USER_ADDED : DataChangeEvent.Type.PROFILE_UPDATED);
+        }
+        return changes;
+    }
+
+    // Drop everything and re-read users.txt on next use
+    public static synchronized void invalidate() {
+        byId = null;
+        idFilter = null;
+        NameIndex.invalidate();
+    }
+
+    private static void ensureLoaded() {
+        if (byId != null) return;
+        byId = new LinkedHashMap<>();
+        for (UserRecord.Attribute attribute : UserRecord.Attribute.values()) {
+            byAttribute.put(attribute, new HashMap<>());
+            labels.put(attribute, new HashMap<>());
+        }
+        for (UserRecord r : UserFileHandler.readUserFile()) {
+            if (byId.putIfAbsent(r.id, r) == null) index(r); // first line wins, as in the file lookups
+        }
+        BloomFilter stored = UserFileHandler.storage().idFilter();
+        if (stored != null && !stored.isFull()) idFilter = stored;
+        else rebuildFilter();
+    }
+
+    // Room for the table to double before the filter has to be rebuilt again
+    private static void rebuildFilter() {
+        BloomFilter filter = new BloomFilter(2 * byId.size());
+        for (String id : byId.keySet()) filter.add(id);
+        idFilter = filter;
+    }
+
+    private static void addToFilter(String id) {
+        idFilter.add(id);
+        if (!idFilter.isFull()) return;
+        BloomFilter bigger = new BloomFilter(2 * (byId.size() + 1)); // id isn't in byId yet
+        for (String known : byId.keySet()) bigger.add(known);
+        bigger.add(id);
+        idFilter = bigger;
+    }
+
+    private static void index(UserRecord r) {
+        for (UserRecord.Attribute attribute : UserRecord.Attribute.values()) {
+            String value = attribute.of(r);
+            if (value.isEmpty()) continue;
+            String key = normalize(value);
+            byAttribute.get(attribute).computeIfAbsent(key, k -> new LinkedHashSet<>()).add(r.id);
+            labels.get(attribute).putIfAbsent(key, value);
+        }
+    }
+
+    private static void unindex(UserRecord r) {
+        for (UserRecord.Attribute attribute : UserRecord.Attribute.values()) {
+            String key = normalize(attribute.of(r));
+            Set<String> ids = byAttribute.get(attribute).get(key);
+            if (ids == null) continue;
+            ids.remove(r.id);
+            if (ids.isEmpty()) {
+                byAttribute.get(attribute).remove(key);
+                labels.get(attribute).remove(key);
+            }
+        }
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toUpperCase();
+    }
+}
@@ -0,0 +1,78 @@
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * One parsed line of users.txt:
+ * id, pass, name, hall, dept, batch, season, mobile
+ * Missing trailing columns are read as empty strings. Rows written by the
+ * old registration form (mobile, hall, dept, batch after the name) are
+ * recognised by the phone number in the hall column and read realigned; they
+ * are stored in the documented order the next time the table is written.
+ */
+public class UserRecord {
+
+    // Columns users can be grouped and filtered by
+    public enum Attribute {
+        HALL("Hall", r -> r.hall), DEPT("Department", r -> r.dept), BATCH("Batch", r -> r.batch);
+
+        public final String label;
+        private final Function<UserRecord, String> getter;
+
+        Attribute(String label, Function<UserRecord, String> getter) {
+            this.label = label;
+            this.getter = getter;
+        }
+
+        public String of(UserRecord r) {
+            return getter.apply(r).trim();
+        }
+    }
+
+    private static final Pattern PHONE = Pattern.compile("\\+?[0-9][0-9*\\- ]{6,}");
+
+    public final String id;
+    public final String password;
+    public final String name;
+    public final String hall;
+    public final String dept;
+    public final String batch;
+    public final String season;
+    public final String mobile;
+
+    public UserRecord(String id, String password, String name, String hall,
+                      String dept, String batch, String season, String mobile) {
+        this.id = id;
+        this.password = password;
+        this.name = name;
+        this.hall = hall;
+        this.dept = dept;
+        this.batch = batch;
+        this.season = season;
+        this.mobile = mobile;
+    }
+
+    public static UserRecord parse(String line) {
+        String[] d = line.split(",", -1);
+        if (isShiftedRow(d)) {
+            // A mobile set later through the profile landed in the right column; prefer it
+            String mobile = field(d, 7).isEmpty() ? field(d, 3) : field(d, 7);
+            return new UserRecord(field(d, 0), field(d, 1), field(d, 2), field(d, 4),
+                                  field(d, 5), field(d, 6), "", mobile);
+        }
+        return new UserRecord(field(d, 0), field(d, 1), field(d, 2), field(d, 3),
+                              field(d, 4), field(d, 5), field(d, 6), field(d, 7));
+    }
+
+    // A phone number (possibly masked, "019*******") where the hall should be
+    private static boolean isShiftedRow(String[] d) {
+        return PHONE.matcher(field(d, 3).trim()).matches();
+    }
+
+    public String toLine() {
+        return id + "," + password + "," + name + "," + hall + "," + dept + "," + batch + "," + season + "," + mobile;
+    }
+
+    private static String field(String[] d, int i) {
+        return i < d.length ? d[i] : "";
+    }
+}
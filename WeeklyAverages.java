@@ -0,0 +1,53 @@
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Every user's weekly habit averages (UserFileHandler.calculateWeeklyAverages),
+ * read once and shared by the engines built on them: Leaderboard,
+ * HabitPercentiles, CohortStats and SimilarityIndex. The 7-day window moves at
+ * midnight, so the first load on a new day re-reads every user in one
+ * parallel pass and starts a new version; an engine built from an older
+ * version rebuilds from the new one. A save only replaces the saver's entry.
+ */
+public class WeeklyAverages {
+
+    private static int day = Integer.MIN_VALUE; // epoch day the averages end on
+    private static long version = 0;
+    private static Map<String, Map<String, Double>> byUser = new HashMap<>();
+
+    // Every user's averages into the map, re-read first if the day moved; returns their version
+    public static synchronized long load(Map<String, Map<String, Double>> into) {
+        ensureCurrent();
+        into.putAll(byUser);
+        return version;
+    }
+
+    // One user's averages, from the same read as load()
+    public static synchronized Map<String, Double> of(String userId) {
+        ensureCurrent();
+        return byUser.computeIfAbsent(userId, UserFileHandler::calculateWeeklyAverages); // e.g. added from outside
+    }
+
+    // True while data built from this version is still today's
+    public static synchronized boolean isCurrent(long loaded) {
+        return loaded == version && day == today();
+    }
+
+    // A user's days changed (saveHabit, or their files were edited); these are the new averages
+    public static synchronized void onHabitSaved(String userId, Map<String, Double> averages) {
+        if (day == today()) byUser.put(userId, averages); // otherwise the next load reads everyone anyway
+    }
+
+    private static void ensureCurrent() {
+        int today = today();
+        if (day == today) return;
+        byUser = UserIndex.all().parallelStream()
+            .collect(Collectors.toMap(r -> r.id, r -> UserFileHandler.calculateWeeklyAverages(r.id), (a, b) -> a, HashMap::new));
+        day = today;
+        version++;
+    }
+
+    private static int today() {
+        return (int) java.time.LocalDate.now().toEpochDay();
+    }
+}